@@ -0,0 +1,223 @@
+package cubesolver;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Solves cube states from a file or stdin, one per line, on a pool of
+// solver threads and writes one line per state in input order: the solution
+// or "error: " and the reason. A state is the 54 facelet colors of
+// setInput(byte[]) or the 20 pieces of setInput(String). Empty lines and
+// lines starting with # are skipped. States per second and the solve
+// latency percentiles go to stderr.
+// Usage: BatchSolver [-t threads] [-f] [-o output file] [input file]
+//   -f writes face turns instead of robot ops
+public class BatchSolver {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    // states queued per thread before the oldest is waited for
+    private static final int WINDOW = 64;
+
+    private final ReadableByteChannel in;
+    private final WritableByteChannel out;
+    private final ByteBuffer inbuf = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ByteBuffer outbuf = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] line = new byte[128];
+    private int linelen;
+    private boolean eof;
+    // solve times of all states
+    private long[] latency = new long[1024];
+    private int count;
+
+    BatchSolver(ReadableByteChannel in, WritableByteChannel out) {
+        this.in = in;
+        this.out = out;
+        inbuf.flip();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean faces = false;
+        String input = null, output = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-t") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-f")) {
+                faces = true;
+            } else if (args[i].equals("-o") && i + 1 < args.length) {
+                output = args[++i];
+            } else if (input == null && !args[i].startsWith("-")) {
+                input = args[i];
+            } else {
+                System.err.println("usage: BatchSolver [-t threads] [-f] [-o output file] [input file]");
+                System.exit(1);
+            }
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("arguments error!");
+        }
+        ReadableByteChannel in = input == null ? Channels.newChannel(System.in)
+                                               : new FileInputStream(input).getChannel();
+        WritableByteChannel out = output == null ? Channels.newChannel(System.out)
+                                                 : new FileOutputStream(output).getChannel();
+        long start = System.nanoTime();
+        SolverPool solvers = new SolverPool(SolverTables.load());
+        System.err.println("tables " + (System.nanoTime() - start) / 1000000 + " ms");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        BatchSolver batch = new BatchSolver(in, out);
+        try {
+            start = System.nanoTime();
+            batch.run(solvers, executor, threads * WINDOW, faces ? 0 : 1);
+            batch.report(System.nanoTime() - start);
+        } finally {
+            executor.shutdown();
+            in.close();
+            out.close();
+        }
+    }
+
+    // Solves all states of the input. At most window states are queued, the
+    // results are written as the oldest ones finish.
+    void run(final SolverPool solvers, ExecutorService executor, int window, final int modeo)
+            throws IOException, InterruptedException {
+        ArrayDeque<Future<Result>> queue = new ArrayDeque<Future<Result>>();
+        String s;
+        while ((s = readline()) != null) {
+            final String state = s;
+            queue.add(executor.submit(new Callable<Result>() {
+                @Override
+                public Result call() {
+                    return solve(solvers, state, modeo);
+                }
+            }));
+            if (queue.size() >= window) {
+                write(queue.poll());
+            }
+        }
+        while (!queue.isEmpty()) {
+            write(queue.poll());
+        }
+        outbuf.flip();
+        while (outbuf.hasRemaining()) out.write(outbuf);
+        outbuf.clear();
+    }
+
+    private static Result solve(SolverPool solvers, String state, int modeo) {
+        Result r = new Result();
+        long start = System.nanoTime();
+        CubeAlgorithm ca = solvers.acquire();
+        try {
+            ca.setModeO(modeo);
+            if (state.length() == 54) {
+                ca.setInput(state.getBytes("ASCII"));
+            } else {
+                ca.setInput(state.split("\\s+"));
+            }
+            r.text = ca.solve();
+        } catch (Exception e) {
+            r.text = "error: " + e.getMessage();
+        } finally {
+            solvers.release(ca);
+        }
+        r.nanos = System.nanoTime() - start;
+        return r;
+    }
+
+    private void write(Future<Result> f) throws IOException, InterruptedException {
+        Result r;
+        try {
+            r = f.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("solve failed!", e.getCause());
+        }
+        if (count == latency.length) {
+            latency = Arrays.copyOf(latency, count * 2);
+        }
+        latency[count++] = r.nanos;
+        int n = r.text.length();
+        if (outbuf.remaining() < n + 1) {
+            outbuf.flip();
+            while (outbuf.hasRemaining()) out.write(outbuf);
+            outbuf.clear();
+        }
+        if (outbuf.remaining() < n + 1) {
+            // longer than the buffer
+            out.write(ByteBuffer.wrap((r.text + "\n").getBytes("ASCII")));
+            return;
+        }
+        for (int i = 0; i < n; i++) outbuf.put((byte)r.text.charAt(i));
+        outbuf.put((byte)'\n');
+    }
+
+    // next line of the input without the line end, trimmed, skipping empty
+    // and comment lines, or null at the end of the input
+    String readline() throws IOException {
+        for (;;) {
+            linelen = 0;
+            boolean more = false;
+            for (;;) {
+                if (!inbuf.hasRemaining()) {
+                    if (eof) break;
+                    inbuf.clear();
+                    int n = in.read(inbuf);
+                    inbuf.flip();
+                    if (n < 0) {
+                        eof = true;
+                        break;
+                    }
+                    continue;
+                }
+                byte b = inbuf.get();
+                more = true;
+                if (b == '\n') break;
+                if (linelen == line.length) {
+                    line = Arrays.copyOf(line, linelen * 2);
+                }
+                line[linelen++] = b;
+            }
+            if (!more) {
+                return null;
+            }
+            String s = new String(line, 0, linelen, "ASCII").trim();
+            if (s.length() != 0 && s.charAt(0) != '#') {
+                return s;
+            }
+        }
+    }
+
+    void report(long elapsed) {
+        System.err.println(count + " states, " + elapsed / 1000000 + " ms, " +
+                           (long)(count * 1e9 / Math.max(elapsed, 1)) + " states/s");
+        if (count == 0) {
+            return;
+        }
+        long[] t = Arrays.copyOf(latency, count);
+        Arrays.sort(t);
+        System.err.println("latency ms: p50 " + percentile(t, 50) + ", p90 " + percentile(t, 90) +
+                           ", p99 " + percentile(t, 99) + ", max " + percentile(t, 100));
+    }
+
+    // in ms with one decimal, nearest rank
+    private static String percentile(long[] sorted, int p) {
+        int i = Math.max((int)Math.ceil(sorted.length * p / 100.0) - 1, 0);
+        long ns = sorted[i];
+        return ns / 1000000 + "." + ns / 100000 % 10;
+    }
+
+    private static class Result {
+        String text;
+        long nanos;
+    }
+
+}
@@ -0,0 +1,27 @@
+package cubesolver;
+
+// Pruning tables kept as one byte per entry.
+public class ByteTableStore implements TableStore {
+
+    private final byte[][] tables;
+
+    public ByteTableStore(byte[][] tables) {
+        this.tables = tables;
+    }
+
+    @Override
+    public int tableCount() {
+        return tables.length;
+    }
+
+    @Override
+    public int size(int table) {
+        return tables[table].length;
+    }
+
+    @Override
+    public int get(int table, int index) {
+        return tables[table][index];
+    }
+
+}
@@ -0,0 +1,18 @@
+package cubesolver;
+
+// Cancels a running solve(ms, deadline, token) from another thread, e.g.
+// when the escape key is pressed. The solve then throws a
+// CancellationException.
+public class CancelToken {
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+}
@@ -1,13 +1,22 @@
 package cubesolver;
 
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class CubeAlgorithm {
 
-    private final Charset CSASC = Charset.forName("ASCII");
-    private final byte CHAROFFSET = 'A';
+    private static final Charset CSASC = Charset.forName("ASCII");
+    private static final byte CHAROFFSET = 'A';
     // RLFBUD is the face order used for input, so that a correctly oriented
     // piece in the input has its 'highest value' facelet first. The rest of the
     // program uses moves in FBRLUD order.
@@ -15,74 +24,400 @@ public class CubeAlgorithm {
     //         A  B  C  D   E  F  G  H   I  J  K  L   M   N   O   P     Q   R   S   T   
     //         A  E  C  G   B  F  D  H   I  J  K  L   M   S   N   T     R   O   Q   P
     // intrnl: UF DF UB DB  UR DR UL DL  FR FL BR BL  UFR UBL DFL DBR   DLB DRF URB ULF
-    private final byte[] order = "AECGBFDHIJKLMSNTROQP".getBytes(CSASC);
+    private static final byte[] order = "AECGBFDHIJKLMSNTROQP".getBytes(CSASC);
     // intrnl: UF DF UB DB  UR DR UL DL  FR FL BR BL  UFR UBL DFL DBR   DLB DRF URB ULF
     // bithash:20,36,24,40, 17,33,18,34, 5, 6, 9, 10, 21, 26, 38, 41,   42, 37, 25, 22
-    private final byte[] bithash = "TdXhQaRbEFIJUZfijeYV".getBytes(CSASC);
+    private static final byte[] bithash = "TdXhQaRbEFIJUZfijeYV".getBytes(CSASC);
     // Each move consists of two 4-cycles. This string contains these in FBRLUD order.
     // intrnl: UF DF UB DB  UR DR UL DL  FR FL BR BL  UFR UBL DFL DBR   DLB DRF URB ULF 
     //         A  B  C  D   E  F  G  H   I  J  K  L   M   N   O   P     Q   R   S   T  
-    private final byte[] perm = "AIBJTMROCLDKSNQPEKFIMSPRGJHLNTOQAGCEMTNSBFDHORPQ".getBytes(CSASC);
-    private final int[] val = {2,2,2,2,2,2,2,2,2,2,2,2,3,3,3,3,3,3,3,3};
+    private static final byte[] perm = "AIBJTMROCLDKSNQPEKFIMSPRGJHLNTOQAGCEMTNSBFDHORPQ".getBytes(CSASC);
+    private static final int[] val = {2,2,2,2,2,2,2,2,2,2,2,2,3,3,3,3,3,3,3,3};
     // input:                   UF     UR     UB     UL    DF     DR     DB     DL    FR     FL    BR     BL    UFR       URB       UBL      ULF      DRF       DFL      DLB      DBR
-    private final int[] imap = {53,15, 51,24, 49,44, 47,6, 29,11, 31,20, 33,40, 35,2, 17,22, 13,8, 42,26, 38,4, 52,16,23, 50,25,43, 48,37,5, 46,7,14, 30,21,10, 28,12,1, 34,3,39, 32,41,19};
-    private final int[] order_r = {0, 4, 1, 5};
-    private final int[] order_s = {0, 2, 1, 3};
-    private final int[] tablesize = {1,4096,  6561,4096,  256,1536,  13824,576};
-
-    private byte[][] tables;
-    private byte[] pos;
-    private byte[] ori;
+    private static final int[] imap = {53,15, 51,24, 49,44, 47,6, 29,11, 31,20, 33,40, 35,2, 17,22, 13,8, 42,26, 38,4, 52,16,23, 50,25,43, 48,37,5, 46,7,14, 30,21,10, 28,12,1, 34,3,39, 32,41,19};
+    static final int[] order_r = {0, 4, 1, 5};
+    static final int[] order_s = {0, 2, 1, 3};
+    static final int[] tablesize = {1,4096,  6561,4096,  256,1536,  13824,576};
+    // total size of the tabledata resource
+    static final int TABLEDATA_SIZE = 30946;
+    // bytes needed for the output of solve(byte[])
+    public static final int OUTPUT_SIZE = 512;
+
+    // read only tables, shared by all contexts on them
+    private final SolverTables shared;
+    private final TableStore tables;
+    private final MoveTables movetables;
+    // symmetry tables of phases 4 and 6, see solvephase
+    private SymTables symtables;
+    private final OrientationTable orient;
+    // state of one solve
+    byte[] pos;
+    byte[] ori;
     private int[] move;
     private int[] moveamount;
     private int phase = 0;
     private int _mode_o = 1;
+    // F=0,B=1,R=2,L=3,U=4,D=5, index:move-face, value:current-face
+    private final int[] faces_mc = new int[6];
+    // index:current-face, value:move-face
+    private final int[] faces_cm = new int[6];
+    // colors of the centres in RLFBUD order
+    private final byte[] centres = new byte[6];
+    // corner work arrays of getposition
+    private final int[] corn = new int[8];
+    private final int[] corn2 = new int[4];
+    // 0: search on the cube state, 1: search on coordinates with move tables
+    private int _mode_s = 0;
+    // number of search nodes visited
+    long nodes;
+    // robot cost search, see setCostModel
+    private RobotCostModel costmodel;
+    private int costslack = 1;
+    private int[] oricost;
+    private int[] turncost;
+    private int mincost;
+    private int bestcost;
+    private int bestlen;
+    private int[] bestmove;
+    private int[] bestamount;
+    // parallel search, see setParallel
+    private ForkJoinPool pool;
+    // set when a worker has found a solution, workers stop on it
+    private AtomicReference<CubeAlgorithm> found;
+    private AtomicReference<CubeAlgorithm> branchfound;
+    private CubeAlgorithm[] workers;
+    // depth from which a phase is searched in parallel
+    private static final int PARALLEL_DEPTH = 7;
+    // limits of solve(ms, deadline, token)
+    long deadline;
+    CancelToken token;
+    // set when the deadline has passed or the solve is cancelled, the
+    // searches then return at once
+    boolean stopped;
+    boolean complete = true;
+    // longest solution of each phase, depth of the search after the deadline
+    private static final int[] maxdepth = {7, 10, 13, 15};
+    // largest slack of setCostModel and setLookahead: the longest phase
+    // solution then fits move (20 turns) and the four of them the turn
+    // stack (64 turns)
+    static final int MAX_SLACK = 4;
+    // solution cache, see setCache
+    private SolutionCache cache;
+    private SolutionCache.Key cachekey;
+    // face turns of the last solve as face*3 + quarter turns - 1, for the cache
+    private byte[] solmove;
+    private int solcount;
+    // counters of the last solve, see setStats
+    private SolverStats stats;
+    // per depth work arrays of searchrelaxed, made on first use
+    private int[][] relaxdist;
+    // cost transposition table: nodes of the cost search of the last phases
+    // reached so far and the least cost they were reached at, see
+    // setTranspositionTable. Open addressing, key + 1 so that 0 is an
+    // empty slot.
+    private static final int TRANS_SIZE = 1 << 15;
+    private boolean transposition;
+    private long[] transkey;
+    private int[] transcost;
+    private int transcount;
+    // lookahead across the phase boundaries, see setLookahead: the context
+    // solving the later phases after a candidate, the cube state at the
+    // start of the phase, the best candidate and the face turns of the
+    // phases before
+    private long lookbudget;
+    private int lookslack;
+    private CubeAlgorithm lookahead;
+    private byte[] lookpos;
+    private byte[] lookori;
+    private int[] lookmove;
+    private int[] lookamount;
+    private int lookbest;
+    private int lookbestlen;
+    private int[] prefixface;
+    private int[] prefixamount;
+    private int prefixcount;
+    private byte[] lookbuf;
+    private long lookstart;
+    private long lookspan;
+    // first phase looked ahead
+    private int lookfirst;
+    private long lookend;
+    private boolean lookstopped;
+    // gets the ops of each phase while solving, see SolveStream
+    SolveStream stream;
+    // face turns of the solution not yet made into robot ops, see pushturn.
+    // Turns below turnbase are already ops.
+    private final int[] turnface = new int[64];
+    private final int[] turnamount = new int[64];
+    private int turncount;
+    private int turnbase;
+    // face turns and robot ops taken out by the peephole stages
+    private int savedturns;
+    private int savedops;
+    // chooses the spins and tilts of the robot ops, see setPlanner
+    private RobotCostModel planmodel;
+    private ReorientPlanner planner;
 
     public CubeAlgorithm() throws Exception {
-        // Load table data from resource file
-        byte[] buf = new byte[30946];
-        InputStream istrm = CubeAlgorithm.class.getResourceAsStream("tabledata");
-        istrm.read(buf);
-        
-        tables = new byte[8][];
-        int k = 0;
-        for (int i = 0; i < 8; i++) {
-            tables[i] = new byte[tablesize[i]];
-            for (int j = 0; j < tablesize[i]; j++) {
-                tables[i][j] = (byte)(buf[k] - CHAROFFSET);
-                k++;
-            }
-        }
+        this(SolverTables.load());
+    }
+
+    public CubeAlgorithm(TableStore tables) {
+        this(tables == null ? null : new SolverTables(tables));
+    }
 
+    // Creates a solver context on shared tables. A context holds the state of
+    // one solve and is cheap to create, so each thread solves on its own
+    // context while all of them share one copy of the tables. The generator
+    // passes null here, it only needs the cube state and the move/position
+    // functions.
+    public CubeAlgorithm(SolverTables shared) {
+        this.shared = shared;
+        tables = shared == null ? null : shared.tables;
+        movetables = shared == null ? null : shared.movetables;
+        orient = shared == null ? null : shared.orient;
         pos = new byte[20];
         ori = new byte[20];
         move = new int[20];
         moveamount = new int[20];
+        reset();
+    }
+
+    // worker of the parallel search, shares the tables of parent
+    private CubeAlgorithm(CubeAlgorithm parent) {
+        this(parent.shared);
+        found = parent.branchfound;
+    }
+
+    static byte[][] loadTables() throws Exception {
+        // Load table data from resource file
+        byte[] buf = new byte[TABLEDATA_SIZE];
+        boolean read = false;
+        InputStream istrm = CubeAlgorithm.class.getResourceAsStream("tabledata");
+        if (istrm != null) {
+            DataInputStream in = new DataInputStream(istrm);
+            try {
+                in.readFully(buf);
+                read = true;
+            } catch (EOFException e) {
+                // truncated
+            } finally {
+                in.close();
+            }
+        }
+        // missing or damaged resource, build the tables at first startup
+        if (!read || TableGenerator.checksum(buf) != TableGenerator.TABLEDATA_CRC) {
+            return TableGenerator.generate();
+        }
+        return TableGenerator.decode(buf);
     }
 
     public String solve() throws UnsupportedEncodingException {
-        StringBuffer sb = new StringBuffer();
-        // internal order
-        String ifaces = "FBRLUD";
-        // F=0,B=1,R=2,L=3,U=4,D=5, index:move-face, value:current-face
-        int[] faces_mc = {0, 1, 2, 3, 4, 5};
-        // index:current-face, value:move-face
-        int[] faces_cm = {0, 1, 2, 3, 4, 5};
-        for (phase = 0; phase < 8; phase += 2) {
-            int j = 0;
-            // try each depth till solved
-            for(; searchphase(j, 0, 9) == 0; j++);
+        byte[] ms = new byte[OUTPUT_SIZE];
+        int len = solve(ms);
+        return new String(ms, 0, len, CSASC);
+    }
+
+    // Solves into ms as pairs of op and amount, like "S2R1T3" in output mode
+    // 1, and returns the number of bytes written. Nothing is allocated, except
+    // by the parallel search. ms needs OUTPUT_SIZE bytes.
+    public int solve(byte[] ms) {
+        check();
+        return solvephases(ms);
+    }
+
+    // solve of a cube state already validated
+    private int solvephases(byte[] ms) {
+        if (stats != null) {
+            stats.reset();
+        }
+        int len = fromcache(ms);
+        if (len >= 0) {
+            return len;
+        }
+        len = 0;
+        resetfaces();
+        // orientation index of the cube on the robot
+        int o = 0;
+        // ops handed over to the stream
+        int sent = 0;
+        if (lookbudget > 0) {
+            copysettings(lookahead);
+            prefixcount = 0;
+            lookstart = System.currentTimeMillis();
+            // at most half the time to the deadline, the rest is for the
+            // search of the phases
+            lookspan = deadline != 0 ? Math.min(lookbudget, (deadline - lookstart) / 2) : lookbudget;
+            // phase 0 goes to the stream at once, the robot starts turning
+            // while the later phases are looked ahead
+            lookfirst = stream != null ? 2 : 0;
+        }
+        for (int p = 0; p < 8; p += 2) {
+            long t = stats != null ? System.nanoTime() : 0;
+            long n = nodes;
+            int j = lookbudget > 0 && p >= lookfirst && p < 6 ? lookahead(p, o) : solvephase(p, o);
+            if (stats != null) {
+                stats.nodes[p / 2] = nodes - n;
+                stats.depth[p / 2] = j;
+                stats.nanos[p / 2] = System.nanoTime() - t;
+            }
+            checkcancel();
+            if (costmodel != null) {
+                for (int i = 0; i < j; i++) {
+                    o = orient.next[o * 6 + move[i]];
+                }
+            }
             // output result of this phase
             for(int i = 0; i < j; i++) {
-                if (_mode_o == 0) {
-                    sb.append(ifaces.substring(move[i], move[i] + 1));
-                    sb.append(moveamount[i]);
-                } else {
-                    sb.append(tosrt(move[i], moveamount[i], faces_mc, faces_cm));
+                pushturn(move[i], moveamount[i]);
+            }
+            if (lookbudget > 0) {
+                System.arraycopy(move, 0, prefixface, prefixcount, j);
+                System.arraycopy(moveamount, 0, prefixamount, prefixcount, j);
+                prefixcount += j;
+            }
+            if (stream != null) {
+                len = flushturns(ms, len, false);
+                // all but the last op are final, it may still merge with
+                // the first op of the next phase
+                len = compactstep(ms, sent, len, false);
+                if (len - 2 > sent) {
+                    stream.put(sent, len - 2);
+                    sent = len - 2;
                 }
             }
         }
-        return compactstep(sb.toString());
+        len = flushturns(ms, len, true);
+        complete = !stopped;
+        len = compactstep(ms, sent, len, true);
+        if (stats != null) {
+            stats.savedturns = savedturns;
+            stats.savedops = savedops;
+        }
+        tocache();
+        return len;
+    }
+
+    // the cached solution of this cube state, -1 if there is none
+    int fromcache(byte[] ms) {
+        if (cache == null) {
+            return -1;
+        }
+        int len = cache.get(this, ms, cachekey);
+        if (len >= 0) {
+            complete = true;
+            if (stats != null) {
+                stats.cached = true;
+            }
+        }
+        return len;
+    }
+
+    // keeps the solution of a complete search
+    void tocache() {
+        if (cache != null && complete) {
+            cache.put(cachekey, solmove, solcount);
+        }
+    }
+
+    // Solves within a deadline (System.currentTimeMillis(), 0 for none) and
+    // can be cancelled by token (may be null). When the deadline has passed
+    // the phase being searched and the later ones take the first solution
+    // up to their longest length instead of the shortest, see isComplete().
+    // The deadline and token are only seen by the searches: the tables a
+    // phase needs and that are not built yet are built first, up to half a
+    // second on a PC and much longer on the brick. The deadline holds once
+    // SolverTables.preload() or a SolverWarmup has built them.
+    public int solve(byte[] ms, long deadline, CancelToken token) {
+        return solve(ms, deadline, token, true);
+    }
+
+    // the same, without validating the cube state when check is false
+    private int solve(byte[] ms, long deadline, CancelToken token, boolean check) {
+        this.deadline = deadline;
+        this.token = token;
+        stopped = false;
+        try {
+            return check ? solve(ms) : solvephases(ms);
+        } finally {
+            this.deadline = 0;
+            this.token = null;
+            stopped = false;
+        }
+    }
+
+    // false when the last solve ran past its deadline, its phases are then
+    // not all the shortest (or cheapest)
+    public boolean isComplete() {
+        return complete;
+    }
+
+    // checked every 1024 nodes
+    boolean timeout() {
+        if ((nodes & 1023) == 0 && (deadline != 0 || token != null) &&
+            ((token != null && token.isCancelled()) || (deadline != 0 && System.currentTimeMillis() >= deadline))) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    boolean cancelled() {
+        return token != null && token.isCancelled();
+    }
+
+    void checkcancel() {
+        if (cancelled()) {
+            throw new CancellationException("solve cancelled!");
+        }
+    }
+
+    // Searches phase p (0, 2, 4 or 6) from the current cube state, o is the
+    // robot orientation for the cost search. Leaves the solution in
+    // move/moveamount, applies it to the cube and returns its length.
+    int solvephase(int p, int o) {
+        int j = 0;
+        phase = p;
+        // waits for the tables of the phase when they are still built
+        if (shared != null) {
+            symtables = shared.prepare(p);
+        }
+        if (costmodel != null) {
+            return searchphasecost(o);
+        } else if (_mode_s == 0) {
+            // try each depth till solved
+            for(; searchphase(j, 0, 9) == 0; j++) {
+                if (stopped) return solverelaxed();
+            }
+        } else {
+            int c0 = getposition(phase), c1 = getposition(phase+1);
+            for(; (pool != null && j >= PARALLEL_DEPTH ?
+                   searchparallel(c0, c1, j) : searchcoord(c0, c1, j, 0, 9)) == 0; j++) {
+                if (stopped) return solverelaxed();
+            }
+            // bring the cube to the end of this phase
+            for (int i = 0; i < j; i++) {
+                for (int k = 0; k < moveamount[i]; k++) domove(move[i]);
+            }
+        }
+        return j;
+    }
+
+    // The deadline has passed, take the first solution of this phase up to
+    // its longest length and apply it to the cube.
+    private int solverelaxed() {
+        if (relaxdist == null) {
+            relaxdist = new int[16][MoveTables.N_MOVE];
+        }
+        int c0 = getposition(phase), c1 = getposition(phase+1);
+        int j = searchrelaxed(c0, c1, maxdepth[phase / 2], 0, 9);
+        if (j < 0) {
+            // cancelled
+            return 0;
+        }
+        for (int i = 0; i < j; i++) {
+            for (int k = 0; k < moveamount[i]; k++) domove(move[i]);
+        }
+        return j;
     }
 
     // WYBBYBGGWRYYRRRBYGYYOBRRYGBGBOOGGWROOWBWOORWRBWWOYOGGW
@@ -91,14 +426,19 @@ public class CubeAlgorithm {
         if (input.length != 54) {
             throw new IllegalArgumentException("arguments error!");
         }
-        String sinput = new String(input, "ASCII");
-        String faces = sinput.substring(18, 19) + sinput.substring(0, 1) + sinput.substring(9, 10) +
-                       sinput.substring(36, 37) + sinput.substring(45, 46) + sinput.substring(27, 28);
+        centres[0] = input[18];
+        centres[1] = input[0];
+        centres[2] = input[9];
+        centres[3] = input[36];
+        centres[4] = input[45];
+        centres[5] = input[27];
         int l = 0;
         for (int i = 0; i < 20; i++) {
             int f = 0, pc = 0, k = 0, mor = 0;
             for (; f < val[i]; f++) {
-                int j = faces.indexOf(sinput.substring(imap[l], imap[l] + 1));
+                int j = 0;
+                for (; j < 6 && centres[j] != input[imap[l]]; j++);
+                if (j == 6) j = -1;
                 l++;
                 // keep track of principal facelet for orientation
                 if (j > k) {
@@ -164,37 +504,359 @@ public class CubeAlgorithm {
         return this;
     }
 
+    // Checks that the cube state can be solved, returns null if so or the
+    // reason. A wrong scan would otherwise make the search deepen forever.
+    public String validate() {
+        // every piece exactly once, edges in edge slots (unknown colors
+        // give piece 20)
+        int seen = 0;
+        for (int i = 0; i < 20; i++) {
+            int p = pos[i];
+            if (p < 0 || p >= 20) return "unknown piece!";
+            if ((p < 12) != (i < 12)) return "piece in wrong slot!";
+            if ((seen & 1 << p) != 0) return "duplicate piece!";
+            seen |= 1 << p;
+        }
+        int t = 0, f = 0;
+        for (int i = 0; i < 12; i++) f += ori[i];
+        for (int i = 12; i < 20; i++) t += ori[i];
+        if (t % 3 != 0) return "corner twist error!";
+        if ((f & 1) != 0) return "edge flip error!";
+        // edge and corner permutations must have the same parity
+        if (parity(0, 12) != parity(12, 8)) return "permutation parity error!";
+        return null;
+    }
+
+    private int parity(int o, int n) {
+        int s = 0;
+        for (int a = o; a < o + n; a++) {
+            for (int b = a; ++b < o + n;) {
+                if (pos[b] < pos[a]) s ^= 1;
+            }
+        }
+        return s;
+    }
+
+    // solve() refuses a cube state that cannot be solved
+    void check() {
+        String reason = validate();
+        if (reason != null) {
+            throw new IllegalStateException(reason);
+        }
+    }
+
     public CubeAlgorithm setModeO(int mode) {
         _mode_o = mode;
         return this;
     }
 
-    private String compactstep(String movestep) throws UnsupportedEncodingException {
-        byte[] ms = movestep.getBytes(CSASC);
-        int len = ms.length;
-        if (len < 2) {
-            return movestep;
+    // Search each phase for the robot program with the least time under
+    // model, instead of the least face turns. Phase solutions up to slack
+    // face turns longer than the shortest are considered, at most MAX_SLACK.
+    // null turns it off.
+    // Each phase takes its own cheapest program, whatever robot orientation
+    // it leaves for the next phases, so a slack above 0 does not make the
+    // whole program cheaper on its own and often makes it dearer (EV3
+    // weights: 73.8 s against 73.5 s on average at slack 1). setLookahead
+    // weighs a phase against the later ones.
+    public CubeAlgorithm setCostModel(RobotCostModel model, int slack) {
+        if (slack < 0 || slack > MAX_SLACK) {
+            throw new IllegalArgumentException("arguments error!");
         }
-        int j = 0;
-        for (int i = 2; i < len; i += 2) {
-            if (ms[i] == ms[j]) {
-                ms[j + 1] = (byte)((ms[j + 1] - '0' + ms[i + 1] - '0')%4 + '0');
-            } else {
-                j += 2;
+        if (model != null) {
+            if (bestmove == null) {
+                bestmove = new int[20];
+                bestamount = new int[20];
+            }
+            oricost = orient.costs(model);
+            turncost = new int[4];
+            mincost = Integer.MAX_VALUE;
+            for (int j = 1; j < 4; j++) {
+                turncost[j] = model.cost('T', j);
+                mincost = Math.min(mincost, turncost[j]);
+            }
+        }
+        costmodel = model;
+        costslack = slack;
+        return this;
+    }
+
+    // In output mode 1 plan the spins and tilts over the whole solution
+    // under model (see ReorientPlanner), best the model of setCostModel,
+    // instead of the fixed recipe of tosrt for each turn. null, the
+    // default, for the recipes. Opt-in: the planner saves spins only, never
+    // adds tilts, and under RobotCost.EV3 the recipes are already the
+    // cheapest. It pays off for weights with uneven spins, e.g. a robot
+    // whose turntable is slower one way.
+    public CubeAlgorithm setPlanner(RobotCostModel model) {
+        if (model != planmodel) {
+            planner = null;
+        }
+        planmodel = model;
+        return this;
+    }
+
+    private ReorientPlanner planner() {
+        if (planmodel == null || orient == null) {
+            return null;
+        }
+        if (planner == null) {
+            planner = new ReorientPlanner(orient, planmodel);
+        }
+        return planner;
+    }
+
+    // Search deeper phase depths on pool, the first two moves are split into
+    // independent tasks. Needs search mode 1, null searches on this thread.
+    public CubeAlgorithm setParallel(ForkJoinPool pool) {
+        if (pool != null) {
+            setModeS(1);
+            if (workers == null) {
+                // at most 18 first and 15 second moves
+                branchfound = new AtomicReference<CubeAlgorithm>();
+                workers = new CubeAlgorithm[18 * 15];
+                for (int i = 0; i < workers.length; i++) workers[i] = new CubeAlgorithm(this);
+            }
+        }
+        this.pool = pool;
+        return this;
+    }
+
+    // Looks up solutions in cache before searching and keeps new ones
+    // there, null for none. The cache must only be shared by solvers of
+    // the same settings.
+    public CubeAlgorithm setCache(SolutionCache cache) {
+        if (cache != null && solmove == null) {
+            solmove = new byte[SolutionCache.MAX_TURNS];
+            cachekey = new SolutionCache.Key();
+        }
+        this.cache = cache;
+        return this;
+    }
+
+    // Collects the node counts, cut-offs, depths and times of each phase of
+    // the following solves in stats, null to stop.
+    public CubeAlgorithm setStats(SolverStats stats) {
+        this.stats = stats;
+        return this;
+    }
+
+    // Keeps the nodes of the cost search (see setCostModel) of the last two
+    // phases in a transposition table with the cost they were reached at.
+    // A node reached again at no less cost is not searched again, its
+    // subtree cannot give a cheaper program. The result is the same, with
+    // fewer nodes where many move orders meet. The search is forward only:
+    // the exact symmetry tables of these phases already are a breadth first
+    // search from the solved cube and give the exact distance from that end.
+    public CubeAlgorithm setTranspositionTable(boolean on) {
+        if (on && transkey == null) {
+            transkey = new long[TRANS_SIZE];
+            transcost = new int[TRANS_SIZE];
+        }
+        transposition = on;
+        return this;
+    }
+
+    // Phases 0, 2 and 4 take, of their solutions up to slack face turns
+    // longer than the shortest, the one that gives the fewest face turns in
+    // all (the least robot time with a cost model) with the later phases
+    // solved after it, instead of the first one they find. The candidates
+    // are tried for budget ms per solve, shared by the phases looked ahead
+    // plus what the phases before left, and for at most half the time to
+    // the deadline of solve(ms, deadline, token). With a SolveStream phase 0
+    // is not looked ahead, so that its ops are not held back. slack is at
+    // most MAX_SLACK. 0 turns it off.
+    public CubeAlgorithm setLookahead(long budget, int slack) {
+        if (budget < 0 || slack < 0 || slack > MAX_SLACK) {
+            throw new IllegalArgumentException("arguments error!");
+        }
+        if (budget > 0 && movetables == null) {
+            throw new IllegalStateException("lookahead needs the solver tables!");
+        }
+        if (budget > 0 && lookahead == null) {
+            lookahead = new CubeAlgorithm(shared);
+            lookpos = new byte[20];
+            lookori = new byte[20];
+            lookmove = new int[20];
+            lookamount = new int[20];
+            prefixface = new int[64];
+            prefixamount = new int[64];
+            lookbuf = new byte[OUTPUT_SIZE];
+        }
+        lookbudget = budget;
+        lookslack = slack;
+        return this;
+    }
+
+    public CubeAlgorithm setModeS(int mode) {
+        _mode_s = mode;
+        return this;
+    }
+
+    // the search settings of this context on w, a context on the same tables
+    void copysettings(CubeAlgorithm w) {
+        w.setModeS(_mode_s);
+        w.setCostModel(costmodel, costslack);
+        w.setPlanner(planmodel);
+        w.setTranspositionTable(transposition);
+    }
+
+    // The lookahead settings on w, with the budget at most maxbudget ms.
+    // Not in copysettings: the lookahead context must not look ahead itself.
+    void copylookahead(CubeAlgorithm w, long maxbudget) {
+        w.setLookahead(Math.min(lookbudget, maxbudget), lookslack);
+    }
+
+    // Puts the inverse of the cube state. A solution of the inverse,
+    // reversed and with each turn inverted, solves the state.
+    void invert() {
+        byte[] p = new byte[20];
+        byte[] o = new byte[20];
+        for (int i = 0; i < 20; i++) {
+            p[pos[i]] = (byte)i;
+            o[pos[i]] = (byte)((val[i] - ori[i]) % val[i]);
+        }
+        System.arraycopy(p, 0, pos, 0, 20);
+        System.arraycopy(o, 0, ori, 0, 20);
+    }
+
+    // cube in the scanned orientation on the robot
+    void resetfaces() {
+        solcount = 0;
+        turncount = 0;
+        turnbase = 0;
+        savedturns = 0;
+        savedops = 0;
+        for (int i = 0; i < 6; i++) {
+            faces_mc[i] = i;
+            faces_cm[i] = i;
+        }
+    }
+
+    // Face turn stage of the peephole optimiser: adds turn f, q quarter
+    // turns, to the turns of the solution. It merges with the last turn of
+    // the same face, also past a turn of the opposite face as those commute
+    // (F B F' gives B), and both go when they add up to 0. This catches what
+    // the searches of two phases leave at their boundary.
+    void pushturn(int f, int q) {
+        int n = turncount;
+        int k = n - 1;
+        if (k >= turnbase && turnface[k] == (f ^ 1)) {
+            k--;
+        }
+        if (k >= turnbase && turnface[k] == f) {
+            q = (turnamount[k] + q) & 3;
+            savedturns++;
+            if (q != 0) {
+                turnamount[k] = q;
+                return;
+            }
+            savedturns++;
+            // take turn k out
+            for (; k < n - 1; k++) {
+                turnface[k] = turnface[k + 1];
+                turnamount[k] = turnamount[k + 1];
+            }
+            turncount = n - 1;
+            return;
+        }
+        turnface[n] = f;
+        turnamount[n] = q;
+        turncount = n + 1;
+    }
+
+    // Appends the turns later turns cannot change to ms as ops, or all of
+    // them. Only the last turn and the one before it if they are of
+    // opposite faces can still change. The planner gets all turns at once
+    // when there is no stream.
+    int flushturns(byte[] ms, int len, boolean all) {
+        int n = turncount;
+        if (!all) {
+            n--;
+            if (n - 1 >= turnbase && turnface[n - 1] == (turnface[n] ^ 1)) n--;
+        }
+        ReorientPlanner p = _mode_o == 1 && n > turnbase ? planner() : null;
+        if (p != null) {
+            len = p.plan(turnface, turnamount, turnbase, n, orient.find(faces_cm), ms, len, faces_cm);
+            for (int i = 0; i < 6; i++) faces_mc[faces_cm[i]] = i;
+            for (; solmove != null && turnbase < n; turnbase++) {
+                solmove[solcount++] = (byte)(turnface[turnbase] * 3 + turnamount[turnbase] - 1);
             }
+            turnbase = n;
+            return len;
+        }
+        for (; turnbase < n; turnbase++) {
+            len = appendmove(ms, len, turnface[turnbase], turnamount[turnbase]);
+        }
+        return len;
+    }
+
+    // append face move mi, step quarter turns, in the output mode to ms at
+    // len and return the new length
+    int appendmove(byte[] ms, int len, int mi, int step) {
+        if (solmove != null) {
+            solmove[solcount++] = (byte)(mi * 3 + step - 1);
+        }
+        if (_mode_o == 0) {
+            // internal order
+            ms[len++] = (byte)"FBRLUD".charAt(mi);
+            ms[len++] = (byte)('0' + step);
+            return len;
+        }
+        return tosrt(mi, step, faces_mc, faces_cm, ms, len);
+    }
+
+    // total time of the robot ops of the solution under the cost model
+    public int cost(String movestep) {
+        return RobotCost.total(costmodel != null ? costmodel : RobotCost.EV3, movestep);
+    }
+
+    // the same for the program in ms[0..len)
+    int cost(byte[] ms, int len) {
+        return RobotCost.total(costmodel != null ? costmodel : RobotCost.EV3, ms, len);
+    }
+
+    // robot op stage of the peephole optimiser on a whole program in place,
+    // returns the new length
+    int compactstep(byte[] ms, int len) {
+        return compactstep(ms, 0, len, true);
+    }
+
+    // The same for the ops from index from on, last if they end the
+    // program. Neighbouring steps of the same op are merged and steps that
+    // add up to 0 (like S1 S3) go. In output mode 1 a spin before a turn
+    // of the bottom layer goes after it, they commute, so it can merge with
+    // a later spin, and spins and tilts at the end of the program go.
+    int compactstep(byte[] ms, int from, int len, boolean last) {
+        int j = from;
+        for (int i = from; i < len; i += 2) {
+            j = pushstep(ms, from, j, ms[i], ms[i + 1] - '0');
+        }
+        if (last && _mode_o == 1) {
+            while (j > from && ms[j - 2] != 'T') j -= 2;
+        }
+        savedops += (len - j) / 2;
+        return j;
+    }
+
+    // puts a step on the ops ms[from..j), returns the new end
+    private int pushstep(byte[] ms, int from, int j, byte op, int amount) {
+        if (amount % 4 == 0) {
+            return j;
         }
-        j += 2;
-        if (j == len) {
-            return movestep;
+        if (j > from && ms[j - 2] == op) {
+            amount = (ms[j - 1] - '0' + amount) % 4;
+            return amount == 0 ? j - 2 : putop(ms, j - 2, (char)op, amount);
         }
-        byte[] bret = new byte[j];
-        for (int k = 0; k < j; k++) {
-            bret[k] = ms[k];
+        if (op == 'T' && _mode_o == 1 && j > from && ms[j - 2] == 'S') {
+            int spin = ms[j - 1] - '0';
+            j = pushstep(ms, from, j - 2, op, amount);
+            return pushstep(ms, from, j, (byte)'S', spin);
         }
-        return new String(bret, "ASCII");
+        return putop(ms, j, (char)op, amount);
     }
 
-    private void rollorspin(int step, int[] ord, int[] faces_mc, int[] faces_cm) {
+    static void rollorspin(int step, int[] ord, int[] faces_mc, int[] faces_cm) {
         int i = 0;
         for (; i < step; i++) {
             int tmp = faces_cm[ord[3]];
@@ -208,43 +870,52 @@ public class CubeAlgorithm {
         }
     }
 
-    private String tosrt(int mi, int step, int[] faces_mc, int[] faces_cm) {
-        String retstr = "";
+    // writes the robot ops of face move mi to ms at len, returns the new length
+    int tosrt(int mi, int step, int[] faces_mc, int[] faces_cm, byte[] ms, int len) {
         switch (faces_mc[mi]) {
         case 0:
             rollorspin(2, order_s, faces_mc, faces_cm);
             rollorspin(1, order_r, faces_mc, faces_cm);
-            retstr = "S2R1";
+            len = putop(ms, len, 'S', 2);
+            len = putop(ms, len, 'R', 1);
             break;
         case 1:
             rollorspin(1, order_r, faces_mc, faces_cm);
-            retstr = "R1";
+            len = putop(ms, len, 'R', 1);
             break;
         case 2:
             rollorspin(1, order_s, faces_mc, faces_cm);
             rollorspin(1, order_r, faces_mc, faces_cm);
-            retstr = "S1R1";
+            len = putop(ms, len, 'S', 1);
+            len = putop(ms, len, 'R', 1);
             break;
         case 3:
             rollorspin(3, order_s, faces_mc, faces_cm);
             rollorspin(1, order_r, faces_mc, faces_cm);
-            retstr = "S3R1";
+            len = putop(ms, len, 'S', 3);
+            len = putop(ms, len, 'R', 1);
             break;
         case 4:
             rollorspin(2, order_r, faces_mc, faces_cm);
-            retstr = "R2";
+            len = putop(ms, len, 'R', 2);
             break;
         default:
             break;
         }
         if (step == 1) {
-            retstr += "T1";
+            len = putop(ms, len, 'T', 1);
         } else if (step == 2) {
-            retstr += "T2";
+            len = putop(ms, len, 'T', 2);
         } else {
-            retstr += "T3";
+            len = putop(ms, len, 'T', 3);
         }
-        return retstr;
+        return len;
+    }
+
+    private static int putop(byte[] ms, int len, char op, int amount) {
+        ms[len] = (byte)op;
+        ms[len + 1] = (byte)('0' + amount);
+        return len + 2;
     }
 
     // Cycles 4 pieces in array p, the piece indices given by a[0..3].
@@ -262,8 +933,19 @@ public class CubeAlgorithm {
         ori[i] = (byte)((ori[i] + a + 1)%val[i]);
     }
 
+    // convert number in range 0..23 to permutation of 4 chars.
+    void numtoperm(byte[] p, int n, int offset) {
+        p[3 + offset] = (byte)offset;
+        for (int a = 3; a-- > 0;) {
+            p[a + offset] = (byte)(n%(4 - a) + offset);
+            n /= 4 - a;
+            for (int b = a; ++b < 4;)
+                if (p[b + offset] >= p[a + offset]) p[b + offset]++;
+        }
+    }
+
     // convert permutation of 4 chars to a number in range 0..23
-    private int permtonum(byte[] p, int offset) {
+    int permtonum(byte[] p, int offset) {
         int n = 0;
         int a = 0;
         for (; a < 4; a++) {
@@ -275,8 +957,56 @@ public class CubeAlgorithm {
         return n;
     }
 
+    // put the cube in its solved state
+    void reset() {
+        for (int i = 0; i < 20; i++) {
+            pos[i] = (byte)i;
+            ori[i] = 0;
+        }
+    }
+
+    // set a cube position with index n for table t, the reverse of getposition.
+    // pieces not covered by table t are left solved.
+    void setposition(int t, int n) {
+        int i = 0, j = 12, k = 0;
+        byte[] corn = "QRSTQRTSQSRTQTRSQSTRQTSR".getBytes(CSASC);
+        reset();
+        switch (t) {
+        // case 0 does nothing so leaves cube solved
+        case 1: //edgeflip
+            for (; i < 12; i++, n >>= 1) ori[i] = (byte)(n&1);
+            break;
+        case 2: //cornertwist
+            for (i = 12; i < 20; i++, n /= 3) ori[i] = (byte)(n%3);
+            break;
+        case 3: //middle edge choice
+            for (; i < 12; i++, n >>= 1) pos[i] = (byte)(8*n&8);
+            break;
+        case 4: //ud slice choice
+            for (; i < 8; i++, n >>= 1) pos[i] = (byte)(4*n&4);
+            break;
+        case 5: //tetrad choice, parity, twist
+        {
+            int c = n%6*4;
+            n /= 6;
+            for (; i < 8; i++, n >>= 1)
+                pos[i+12] = (byte)((n&1) != 0 ? corn[c + k++] - CHAROFFSET : j++);
+            break;
+        }
+        case 6: //slice permutations
+            numtoperm(pos, n%24, 12); n /= 24;
+            numtoperm(pos, n%24, 4); n /= 24;
+            numtoperm(pos, n, 0);
+            break;
+        case 7: //corner permutations
+            numtoperm(pos, n/24, 8);
+            numtoperm(pos, n%24, 16);
+            break;
+        }
+    }
+
     // get index of cube position from table t
-    private int getposition(int t) {
+    int getposition(int t) {
         int i = -1, n = 0;
         switch (t) {
         // case 0 does nothing so returns 0
@@ -298,8 +1028,8 @@ public class CubeAlgorithm {
             break;
         case 5: //tetrad choice, twist and parity
         {
-            int[] corn = {0, 0, 0, 0, 0, 0, 0, 0};
-            int[] corn2 = {0, 0, 0, 0};
+            int[] corn = this.corn;
+            int[] corn2 = this.corn2;
             int j, k, l;
             // 8 bits, set bit if corner belongs in second tetrad.
             // also separate pieces for twist/parity determination
@@ -330,7 +1060,7 @@ public class CubeAlgorithm {
     }
 
     // do a clockwise quarter turn cube move
-    private void domove(int m) {
+    void domove(int m) {
         int i = 8;
         //cycle the edges
         cycle(pos, perm, 8 * m);
@@ -349,9 +1079,14 @@ public class CubeAlgorithm {
     // Pruned tree search. recursive.
     private int searchphase(int movesleft, int movesdone, int lastmove) {
         int i = 6;
+        nodes++;
+        if (timeout()) return 0;
         // prune - position must still be solvable in the remaining moves available
-        if (tables[phase  ][getposition(phase  )] - 1 > movesleft ||
-            tables[phase+1][getposition(phase+1)] - 1 > movesleft ) return 0;
+        int c0 = getposition(phase), c1 = getposition(phase+1);
+        if (prune(c0, c1) > movesleft) {
+            if (stats != null) cut(c0, c1, movesleft);
+            return 0;
+        }
 
         // If no moves left to do, we have solved this phase
         if (movesleft == 0) return 1;
@@ -381,4 +1116,430 @@ public class CubeAlgorithm {
         return 0;
     }
 
+    // Lower bound of the moves left in this phase from the coordinates of
+    // tables phase and phase+1. The last two phases have exact tables.
+    private int prune(int c0, int c1) {
+        if (phase >= 4) {
+            return symtables.distance(phase, c0, c1);
+        }
+        return Math.max(tables.get(phase, c0), tables.get(phase+1, c1)) - 1;
+    }
+
+    // counts a cut-off of prune for the stats, by the table that gave it
+    private void cut(int c0, int c1, int movesleft) {
+        int k = phase >= 4 ? SolverStats.CUT_SYM :
+                tables.get(phase, c0) - 1 > movesleft ? SolverStats.CUT_FIRST : SolverStats.CUT_SECOND;
+        stats.cuts[phase / 2][k]++;
+    }
+
+    // Pruned tree search on the coordinates c0, c1 of tables phase, phase+1,
+    // same order as searchphase but the cube state is not touched.
+    private int searchcoord(int c0, int c1, int movesleft, int movesdone, int lastmove) {
+        int i = 6;
+        nodes++;
+        // another branch of the parallel search has found a solution,
+        // not checked near the leaves where the subtrees are small.
+        if (movesleft > 2 && found != null && found.get() != null) return 0;
+        if (timeout()) return 0;
+        // prune - position must still be solvable in the remaining moves available
+        if (prune(c0, c1) > movesleft) {
+            if (stats != null) cut(c0, c1, movesleft);
+            return 0;
+        }
+
+        // If no moves left to do, we have solved this phase
+        if (movesleft == 0) return 1;
+
+        char[] m0 = movetables.moves[phase];
+        char[] m1 = movetables.moves[phase+1];
+        // not solved. try each face move
+        for (; i-- > 0;) {
+            // do not repeat same face
+            if ((i - lastmove) != 0) {
+                int j = 0;
+                move[movesdone] = i;
+                // try 1,2,3 quarter turns of that face
+                for (; ++j < 4;) {
+                    int m = i * 3 + j - 1;
+                    moveamount[movesdone] = j;
+                    //Check if phase only allows half moves of this face
+                    if ((j == 2 || i >= phase ) &&
+                        //search on
+                        searchcoord(m0[c0 * MoveTables.N_MOVE + m], m1[c1 * MoveTables.N_MOVE + m],
+                                    movesleft - 1, movesdone + 1, i) != 0) return 1;
+                }
+            }
+        }
+        // no solution found
+        return 0;
+    }
+
+    // Depth first search that stops at the first solution of at most
+    // movesleft moves. Moves getting closer to the end of the phase are
+    // tried first. Returns its length, or -1 if there is none or the solve
+    // is cancelled.
+    private int searchrelaxed(int c0, int c1, int movesleft, int movesdone, int lastmove) {
+        nodes++;
+        int d = prune(c0, c1);
+        if (d == 0) return movesdone;
+        if (d > movesleft) {
+            if (stats != null) cut(c0, c1, movesleft);
+            return -1;
+        }
+        if (cancelled()) return -1;
+
+        char[] m0 = movetables.moves[phase];
+        char[] m1 = movetables.moves[phase+1];
+        // remaining distance after each move, -1 for moves not to try
+        int[] dist = relaxdist[movesdone];
+        int n = 0;
+        for (int m = 0; m < MoveTables.N_MOVE; m++) {
+            int i = m / 3, j = m % 3 + 1;
+            dist[m] = -1;
+            if (i != lastmove && (j == 2 || i >= phase)) {
+                int dm = prune(m0[c0 * MoveTables.N_MOVE + m], m1[c1 * MoveTables.N_MOVE + m]);
+                if (dm < movesleft) {
+                    dist[m] = dm;
+                    n++;
+                }
+            }
+        }
+        for (d = 0; n > 0; d++) {
+            for (int m = 0; m < MoveTables.N_MOVE; m++) {
+                if (dist[m] != d) continue;
+                n--;
+                move[movesdone] = m / 3;
+                moveamount[movesdone] = m % 3 + 1;
+                int r = searchrelaxed(m0[c0 * MoveTables.N_MOVE + m], m1[c1 * MoveTables.N_MOVE + m],
+                                      movesleft - 1, movesdone + 1, m / 3);
+                if (r >= 0) return r;
+            }
+        }
+        return -1;
+    }
+
+    // Finds the cheapest robot program for this phase, starting in robot
+    // orientation o. Leaves it in move/moveamount, applies it to the cube
+    // and returns its length.
+    private int searchphasecost(int o) {
+        int c0 = getposition(phase), c1 = getposition(phase+1);
+        int j = 0;
+        // shortest solution first, it bounds the cost
+        for(; searchcoord(c0, c1, j, 0, 9) == 0; j++) {
+            if (stopped) return solverelaxed();
+        }
+        bestcost = phasecost(o, j);
+        bestlen = j;
+        if (transposition && phase >= 4) {
+            Arrays.fill(transkey, 0);
+            transcount = 0;
+        }
+        System.arraycopy(move, 0, bestmove, 0, j);
+        System.arraycopy(moveamount, 0, bestamount, 0, j);
+        for (int d = j; d <= j + costslack; d++) {
+            searchcost(c0, c1, o, 0, d, 0, 9);
+        }
+        System.arraycopy(bestmove, 0, move, 0, bestlen);
+        System.arraycopy(bestamount, 0, moveamount, 0, bestlen);
+        // bring the cube to the end of this phase
+        for (int i = 0; i < bestlen; i++) {
+            for (int k = 0; k < moveamount[i]; k++) domove(move[i]);
+        }
+        return bestlen;
+    }
+
+    // Solves phase p like solvephase, then tries the other solutions of the
+    // phase up to lookslack face turns longer than the shortest on the
+    // lookahead context till the share of the budget of the phase is used,
+    // and keeps the one with the least total, see setLookahead. The first
+    // solution wins ties.
+    private int lookahead(int p, int o) {
+        System.arraycopy(pos, 0, lookpos, 0, 20);
+        System.arraycopy(ori, 0, lookori, 0, 20);
+        int j = solvephase(p, o);
+        lookend = lookstart + lookspan * (p - lookfirst + 2) / (6 - lookfirst);
+        if (stopped || System.currentTimeMillis() >= lookend) {
+            return j;
+        }
+        System.arraycopy(move, 0, lookmove, 0, j);
+        System.arraycopy(moveamount, 0, lookamount, 0, j);
+        lookbestlen = j;
+        lookbest = lookcost(j);
+        // the candidates are searched from the start of the phase
+        System.arraycopy(lookpos, 0, pos, 0, 20);
+        System.arraycopy(lookori, 0, ori, 0, 20);
+        int c0 = getposition(phase), c1 = getposition(phase+1);
+        lookstopped = false;
+        int last = maxdepth[phase / 2];
+        for (int d = prune(c0, c1); d <= last && !lookstopped; d++) {
+            if (searchcandidates(c0, c1, d, 0, 9)) {
+                last = Math.min(last, d + lookslack);
+            }
+        }
+        checkcancel();
+        System.arraycopy(lookmove, 0, move, 0, lookbestlen);
+        System.arraycopy(lookamount, 0, moveamount, 0, lookbestlen);
+        // bring the cube to the end of this phase
+        for (int i = 0; i < lookbestlen; i++) {
+            for (int k = 0; k < moveamount[i]; k++) domove(move[i]);
+        }
+        return lookbestlen;
+    }
+
+    // Depth first search over all phase solutions of movesleft more moves,
+    // each is given to lookcost and kept in lookmove/lookamount when it is
+    // better than the best so far. Opposite faces are turned in one order
+    // only, the other order gives the same cube. Returns whether there was a
+    // solution.
+    private boolean searchcandidates(int c0, int c1, int movesleft, int movesdone, int lastmove) {
+        nodes++;
+        if ((nodes & 1023) == 0 && (System.currentTimeMillis() >= lookend || cancelled())) {
+            lookstopped = true;
+        }
+        if (lookstopped || prune(c0, c1) > movesleft) {
+            return false;
+        }
+        if (movesleft == 0) {
+            int c = lookcost(movesdone);
+            if (c < lookbest) {
+                lookbest = c;
+                lookbestlen = movesdone;
+                System.arraycopy(move, 0, lookmove, 0, movesdone);
+                System.arraycopy(moveamount, 0, lookamount, 0, movesdone);
+            }
+            return true;
+        }
+        boolean found = false;
+        char[] m0 = movetables.moves[phase];
+        char[] m1 = movetables.moves[phase+1];
+        for (int i = 6; i-- > 0;) {
+            if (i == lastmove || ((i ^ 1) == lastmove && i < lastmove)) {
+                continue;
+            }
+            move[movesdone] = i;
+            for (int j = 1; j < 4; j++) {
+                int m = i * 3 + j - 1;
+                moveamount[movesdone] = j;
+                if ((j == 2 || i >= phase) &&
+                    searchcandidates(m0[c0 * MoveTables.N_MOVE + m], m1[c1 * MoveTables.N_MOVE + m],
+                                     movesleft - 1, movesdone + 1, i)) {
+                    found = true;
+                }
+            }
+        }
+        return found;
+    }
+
+    // Face turns in all, or the robot time with a cost model, of the
+    // solution with move[0..n) as this phase: the phases before, the
+    // candidate and the later phases solved after it on the lookahead
+    // context, through the same peephole as the output. MAX_VALUE when the
+    // later phases are not solved in time.
+    private int lookcost(int n) {
+        CubeAlgorithm w = lookahead;
+        System.arraycopy(lookpos, 0, w.pos, 0, 20);
+        System.arraycopy(lookori, 0, w.ori, 0, 20);
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < moveamount[i]; k++) w.domove(move[i]);
+        }
+        w.setModeO(0);
+        // reached by moves from the state solve validated
+        int len = w.solve(lookbuf, lookend, token, false);
+        if (!w.isComplete()) {
+            lookstopped = true;
+            return Integer.MAX_VALUE;
+        }
+        w.setModeO(costmodel != null ? 1 : 0);
+        w.resetfaces();
+        for (int i = 0; i < prefixcount; i++) w.pushturn(prefixface[i], prefixamount[i]);
+        for (int i = 0; i < n; i++) w.pushturn(move[i], moveamount[i]);
+        for (int i = 0; i < len; i += 2) w.pushturn("FBRLUD".indexOf(lookbuf[i]), lookbuf[i + 1] - '0');
+        len = w.compactstep(lookbuf, w.flushturns(lookbuf, 0, true));
+        return costmodel != null ? w.cost(lookbuf, len) : len / 2;
+    }
+
+    // robot time of the first len moves in move/moveamount from orientation o
+    private int phasecost(int o, int len) {
+        int c = 0;
+        for (int i = 0; i < len; i++) {
+            c += oricost[o * 6 + move[i]] + turncost[moveamount[i]];
+            o = orient.next[o * 6 + move[i]];
+        }
+        return c;
+    }
+
+    // Branch and bound search over all phase solutions of movesleft more
+    // moves, keeps the one with the least robot time in bestmove/bestamount.
+    private void searchcost(int c0, int c1, int o, int cost, int movesleft, int movesdone, int lastmove) {
+        int i = 6;
+        nodes++;
+        // past the deadline the cheapest program found so far is kept
+        if (timeout()) return;
+        int d = prune(c0, c1);
+        // prune - position must still be solvable in the remaining moves available
+        if (d > movesleft) {
+            if (stats != null) cut(c0, c1, movesleft);
+            return;
+        }
+        // prune - every remaining move costs at least one turn
+        if (cost + d * mincost >= bestcost) {
+            if (stats != null) stats.cuts[phase / 2][SolverStats.CUT_COST]++;
+            return;
+        }
+
+        if (movesleft == 0) {
+            bestcost = cost;
+            bestlen = movesdone;
+            System.arraycopy(move, 0, bestmove, 0, movesdone);
+            System.arraycopy(moveamount, 0, bestamount, 0, movesdone);
+            return;
+        }
+        // prune - reached before at no more cost, see setTranspositionTable
+        if (transposition && phase >= 4 && reached(c0, c1, o, cost, movesleft, lastmove)) {
+            if (stats != null) stats.cuts[phase / 2][SolverStats.CUT_TRANSPOSITION]++;
+            return;
+        }
+
+        char[] m0 = movetables.moves[phase];
+        char[] m1 = movetables.moves[phase+1];
+        for (; i-- > 0;) {
+            // do not repeat same face
+            if ((i - lastmove) != 0) {
+                int j = 0;
+                int c = cost + oricost[o * 6 + i];
+                move[movesdone] = i;
+                for (; ++j < 4;) {
+                    int m = i * 3 + j - 1;
+                    moveamount[movesdone] = j;
+                    if ((j == 2 || i >= phase ) && c + turncost[j] < bestcost) {
+                        searchcost(m0[c0 * MoveTables.N_MOVE + m], m1[c1 * MoveTables.N_MOVE + m],
+                                   orient.next[o * 6 + i], c + turncost[j], movesleft - 1, movesdone + 1, i);
+                    }
+                }
+            }
+        }
+    }
+
+    // Looks up a node of the cost search in the transposition table: true
+    // when it was reached at cost or less before, else it is put in with
+    // cost. The subtree of a node depends on its coordinates, orientation,
+    // moves left and last face only. When the table is 3/4 full no more
+    // nodes are put in.
+    private boolean reached(int c0, int c1, int o, int cost, int movesleft, int lastmove) {
+        long key = ((((long)c0 * 2048 + c1) * 32 + o) * 32 + movesleft) * 16 + lastmove + 1;
+        int i = (int)((key * 0x9E3779B97F4A7C15L) >>> 49);
+        for (;; i = (i + 1) & (TRANS_SIZE - 1)) {
+            long k = transkey[i];
+            if (k == key) {
+                if (transcost[i] <= cost) {
+                    return true;
+                }
+                transcost[i] = cost;
+                return false;
+            }
+            if (k == 0) {
+                if (transcount < TRANS_SIZE / 4 * 3) {
+                    transkey[i] = key;
+                    transcost[i] = cost;
+                    transcount++;
+                }
+                return false;
+            }
+        }
+    }
+
+    // Searches this phase at depth movesleft with every allowed sequence of
+    // the first two moves as its own task. All tasks stop as soon as one has
+    // found a solution, which is then copied to move/moveamount.
+    private int searchparallel(int c0, int c1, int movesleft) {
+        List<BranchTask> tasks = new ArrayList<BranchTask>();
+        branchfound.set(null);
+        char[] m0 = movetables.moves[phase];
+        char[] m1 = movetables.moves[phase+1];
+        for (int i = 6; i-- > 0;) {
+            for (int j = 1; j < 4; j++) {
+                if (j != 2 && i < phase) continue;
+                int m = i * 3 + j - 1;
+                int d0 = m0[c0 * MoveTables.N_MOVE + m], d1 = m1[c1 * MoveTables.N_MOVE + m];
+                for (int k = 6; k-- > 0;) {
+                    if (k == i) continue;
+                    for (int l = 1; l < 4; l++) {
+                        if (l != 2 && k < phase) continue;
+                        int n = k * 3 + l - 1;
+                        CubeAlgorithm w = workers[tasks.size()];
+                        w.phase = phase;
+                        w.symtables = symtables;
+                        w.nodes = 0;
+                        w.deadline = deadline;
+                        w.token = token;
+                        w.stopped = false;
+                        if (stats == null) {
+                            w.stats = null;
+                        } else if (w.stats == null) {
+                            w.stats = new SolverStats();
+                        }
+                        w.move[0] = i;
+                        w.moveamount[0] = j;
+                        w.move[1] = k;
+                        w.moveamount[1] = l;
+                        tasks.add(new BranchTask(w, m0[d0 * MoveTables.N_MOVE + n],
+                                                 m1[d1 * MoveTables.N_MOVE + n], movesleft - 2, k));
+                    }
+                }
+            }
+        }
+        pool.invoke(new BranchesTask(tasks));
+        for (BranchTask t : tasks) {
+            nodes += t.w.nodes;
+            stopped |= t.w.stopped;
+            if (stats != null) {
+                stats.add(t.w.stats);
+                t.w.stats.reset();
+            }
+        }
+        CubeAlgorithm w = branchfound.get();
+        if (w == null) return 0;
+        System.arraycopy(w.move, 0, move, 0, movesleft);
+        System.arraycopy(w.moveamount, 0, moveamount, 0, movesleft);
+        return 1;
+    }
+
+    private static class BranchesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<BranchTask> tasks;
+
+        BranchesTask(List<BranchTask> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
+
+    // one root branch of the parallel search, on its own worker
+    private static class BranchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CubeAlgorithm w;
+        private final int c0, c1, movesleft, lastmove;
+
+        BranchTask(CubeAlgorithm w, int c0, int c1, int movesleft, int lastmove) {
+            this.w = w;
+            this.c0 = c0;
+            this.c1 = c1;
+            this.movesleft = movesleft;
+            this.lastmove = lastmove;
+        }
+
+        @Override
+        protected void compute() {
+            if (w.searchcoord(c0, c1, movesleft, 2, lastmove) != 0) {
+                w.found.compareAndSet(null, w);
+            }
+        }
+    }
+
 }
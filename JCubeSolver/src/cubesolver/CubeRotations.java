@@ -0,0 +1,99 @@
+package cubesolver;
+
+// The 24 whole cube rotations: how they map the faces and the cube states
+// of CubeAlgorithm. A solution of the state turned by rotation r is one of
+// the state itself with each face f replaced by inv(r, f).
+public class CubeRotations {
+
+    static final int N_ROT = 24;
+    private static final String FACES = "FBRLUD";
+    // input slot names, see CubeAlgorithm.setInput(String)
+    private static final String[] slots = {
+        "UF", "UR", "UB", "UL", "DF", "DR", "DB", "DL", "FR", "FL", "BR", "BL",
+        "UFR", "URB", "UBL", "ULF", "DRF", "DFL", "DLB", "DBR"
+    };
+    // piece names in the internal order of CubeAlgorithm
+    private static final String[] pieces = {
+        "UF", "DF", "UB", "DB", "UR", "DR", "UL", "DL", "FR", "FL", "BR", "BL",
+        "UFR", "UBL", "DFL", "DBR", "DLB", "DRF", "URB", "ULF"
+    };
+    // internal slot of each input slot
+    private static final String order = "AECGBFDHIJKLMSNTROQP";
+    private static final String AXES = "UDFBRL";
+    private static final int[][] axisperm = {{0, 1, 2}, {1, 2, 0}, {2, 0, 1}, {0, 2, 1}, {1, 0, 2}, {2, 1, 0}};
+
+    // face maps of the rotations, [rotation][face] in FBRLUD order, and the
+    // inverse
+    private static final int[][] rot = new int[N_ROT][6];
+    private static final int[][] rotinv = new int[N_ROT][6];
+
+    // the proper rotations, faces as +y -y +z -z +x -x
+    static {
+        int n = 0;
+        for (int p = 0; p < 6; p++) {
+            for (int flips = 0; flips < 8; flips++) {
+                // a rotation keeps the handedness of the axes
+                if (((p < 3 ? 0 : 1) + Integer.bitCount(flips)) % 2 != 0) continue;
+                for (int f = 0; f < 6; f++) {
+                    int g = AXES.indexOf(FACES.charAt(f));
+                    int h = axisperm[p][g / 2] * 2 + ((g & 1) ^ (flips >> (g / 2) & 1));
+                    rot[n][f] = FACES.indexOf(AXES.charAt(h));
+                }
+                for (int f = 0; f < 6; f++) rotinv[n][rot[n][f]] = f;
+                n++;
+            }
+        }
+    }
+
+    private CubeRotations() {
+    }
+
+    // face f after rotation r, rotation 0 is the identity
+    static int face(int r, int f) {
+        return rot[r][f];
+    }
+
+    // face f before rotation r
+    static int inv(int r, int f) {
+        return rotinv[r][f];
+    }
+
+    // Puts the cube state of src turned by rotation r into dst, by moving
+    // and relabeling the facelets of the piece notation of setInput(String).
+    static void rotate(CubeAlgorithm src, int r, CubeAlgorithm dst) {
+        String[] tokens = new String[20];
+        for (int i = 0; i < 20; i++) {
+            String name = slots[i];
+            // colors of the facelets of this slot, in slot name order
+            int s = order.charAt(i) - 'A';
+            String piece = pieces[src.pos[s]];
+            char[] t = new char[name.length()];
+            for (int k = 0; k < t.length; k++) t[(k + src.ori[s]) % t.length] = piece.charAt(k);
+            // slot and facelet order after the rotation
+            char[] rname = new char[t.length];
+            for (int k = 0; k < t.length; k++) rname[k] = map(r, name.charAt(k));
+            int j = slotof(rname);
+            char[] u = new char[t.length];
+            for (int k = 0; k < t.length; k++) {
+                u[slots[j].indexOf(rname[k])] = map(r, t[k]);
+            }
+            tokens[j] = new String(u);
+        }
+        dst.setInput(tokens);
+    }
+
+    private static char map(int r, char face) {
+        return FACES.charAt(rot[r][FACES.indexOf(face)]);
+    }
+
+    private static int slotof(char[] name) {
+        for (int i = 0; i < 20; i++) {
+            String p = slots[i];
+            int k = 0;
+            for (; k < name.length && p.length() == name.length && p.indexOf(name[k]) >= 0; k++);
+            if (k == name.length) return i;
+        }
+        throw new IllegalStateException("no piece!");
+    }
+
+}
@@ -0,0 +1,43 @@
+package cubesolver;
+
+// (coordinate, move) -> coordinate transition tables for the 8 coordinates
+// of CubeAlgorithm.getposition, so a search node is a few array lookups
+// instead of domove and getposition on the cube state.
+// Moves are numbered face*3 + quarter turns - 1, faces in FBRLUD order.
+public class MoveTables {
+
+    static final int N_MOVE = 18;
+
+    final char[][] moves = new char[8][];
+    private final TableStore tables;
+
+    // the tables are built by build(t), see SolverTables.prepare
+    public MoveTables(TableStore tables) {
+        this.tables = tables;
+    }
+
+    // builds table t if it is not built yet, positions not reachable in
+    // the pruning tables are left out
+    void build(int t) {
+        if (moves[t] != null) {
+            return;
+        }
+        CubeAlgorithm c = new CubeAlgorithm((SolverTables)null);
+        char[] mt = new char[CubeAlgorithm.tablesize[t] * N_MOVE];
+        for (int i = 0; i < CubeAlgorithm.tablesize[t]; i++) {
+            if (tables.get(t, i) == 0) {
+                continue;
+            }
+            c.setposition(t, i);
+            for (int f = 0; f < 6; f++) {
+                for (int q = 0; q < 3; q++) {
+                    c.domove(f);
+                    mt[i * N_MOVE + f * 3 + q] = (char)c.getposition(t);
+                }
+                c.domove(f);
+            }
+        }
+        moves[t] = mt;
+    }
+
+}
@@ -0,0 +1,184 @@
+package cubesolver;
+
+import java.io.File;
+import java.util.Random;
+
+// Optimal solver, the fewest face turns (quarter and half turns count one)
+// instead of the 30 odd of CubeAlgorithm, with the same setInput(...) /
+// solve() API and output. Iterative deepening A* with the largest of the
+// three pattern databases of OptimalTables as the lower bound. A random
+// cube takes 18 turns and millions to billions of nodes, so this is for
+// benchmarks and demos on a PC, not for the brick. Past the deadline of
+// solve(ms, deadline, token) the search gives up with a DeadlineException,
+// there is no shorter partial result to return.
+public class OptimalAlgorithm extends CubeAlgorithm {
+
+    private static final int NM = OptimalTables.N_MOVE;
+    private static final int NT = OptimalTables.N_TWIST;
+    // every cube is solved in 20 face turns
+    private static final int MAX_LENGTH = 20;
+
+    private final OptimalTables ot;
+    private final TableStore prune;
+    // found moves, face and quarter turns
+    private final int[] ax = new int[MAX_LENGTH];
+    private final int[] po = new int[MAX_LENGTH];
+    private int solLength;
+    // nodes and time of the last solve
+    private long solvenodes;
+    private long solvenanos;
+
+    // the deadline passed before the shortest solution was found, unlike
+    // the IllegalStateException of a cube state that cannot be solved
+    public static class DeadlineException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        DeadlineException() {
+            super("deadline passed!");
+        }
+    }
+
+    public OptimalAlgorithm(OptimalTables tables) {
+        super((SolverTables)null);
+        ot = tables;
+        prune = tables.prune;
+    }
+
+    @Override
+    public int solve(byte[] ms) {
+        check();
+        int len = fromcache(ms);
+        if (len >= 0) {
+            return len;
+        }
+        long start = System.nanoTime();
+        long n = nodes;
+        int cp = TwoPhaseTables.getperm(pos, 12, 8);
+        int tw = TwoPhaseTables.gettwist(ori);
+        int e0 = OptimalTables.getedges(this, 0);
+        int e6 = OptimalTables.getedges(this, 6);
+        solLength = -1;
+        for (int depth = bound(cp * NT + tw, e0, e6); depth <= MAX_LENGTH && !stopped; depth++) {
+            if (search(cp, tw, e0, e6, 0, depth, 9)) {
+                solLength = depth;
+                break;
+            }
+        }
+        solvenodes = nodes - n;
+        solvenanos = System.nanoTime() - start;
+        checkcancel();
+        if (solLength < 0 && stopped) {
+            complete = false;
+            throw new DeadlineException();
+        }
+        if (solLength < 0) {
+            throw new IllegalStateException("no solution found!");
+        }
+        resetfaces();
+        for (int i = 0; i < solLength; i++) {
+            pushturn(ax[i], po[i]);
+        }
+        complete = true;
+        len = compactstep(ms, flushturns(ms, 0, true));
+        tocache();
+        return len;
+    }
+
+    // search nodes of the last solve
+    public long getNodes() {
+        return solvenodes;
+    }
+
+    // search time of the last solve in ns
+    public long getNanos() {
+        return solvenanos;
+    }
+
+    public long getNodesPerSecond() {
+        return (long)(solvenodes * 1e9 / Math.max(solvenanos, 1));
+    }
+
+    // lower bound of the face turns left
+    private int bound(int corners, int e0, int e6) {
+        return Math.max(prune.get(OptimalTables.PRUNE_CORNERS, corners),
+                        Math.max(prune.get(OptimalTables.PRUNE_EDGES0, e0),
+                                 prune.get(OptimalTables.PRUNE_EDGES6, e6))) - 1;
+    }
+
+    // do not repeat same face, and turn opposite faces in one order only
+    private static boolean skipface(int f, int lastface) {
+        return f == lastface || ((f ^ 1) == lastface && f < lastface);
+    }
+
+    private boolean search(int cp, int tw, int e0, int e6, int depth, int togo, int lastface) {
+        nodes++;
+        if (timeout()) {
+            return false;
+        }
+        if (togo == 0) {
+            return cp == 0 && tw == 0 && e0 == 0 && e6 == ot.solved6;
+        }
+        for (int f = 0; f < 6; f++) {
+            if (skipface(f, lastface)) {
+                continue;
+            }
+            for (int q = 0; q < 3; q++) {
+                int m = f * 3 + q;
+                int c = ot.cpermMove[cp * NM + m];
+                int t = ot.twistMove[tw * NM + m];
+                // prune - the corners first, they cut off the most
+                if (prune.get(OptimalTables.PRUNE_CORNERS, c * NT + t) - 1 > togo - 1) {
+                    continue;
+                }
+                int a = ot.next(OptimalTables.PRUNE_EDGES0, e0, m);
+                if (prune.get(OptimalTables.PRUNE_EDGES0, a) - 1 > togo - 1) {
+                    continue;
+                }
+                int b = ot.next(OptimalTables.PRUNE_EDGES6, e6, m);
+                if (prune.get(OptimalTables.PRUNE_EDGES6, b) - 1 > togo - 1) {
+                    continue;
+                }
+                ax[depth] = f;
+                po[depth] = q + 1;
+                if (search(c, t, a, b, depth + 1, togo - 1, f)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Solves random scrambles and reports the nodes per second, to judge
+    // the host. The tables are built and written to the file at first.
+    // Usage: OptimalAlgorithm [table file] [scramble face turns] [count] [seed]
+    public static void main(String[] args) throws Exception {
+        File file = new File(args.length > 0 ? args[0] : "optimaltables");
+        int turns = args.length > 1 ? Integer.parseInt(args[1]) : 14;
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        long start = System.nanoTime();
+        OptimalAlgorithm ca = new OptimalAlgorithm(OptimalTables.open(file));
+        System.out.println("tables " + (System.nanoTime() - start) / 1000000 + " ms on " +
+                           Runtime.getRuntime().availableProcessors() + " cores");
+        ca.setModeO(0);
+        Random rnd = new Random(seed);
+        long nodes = 0, nanos = 0;
+        for (int n = 0; n < count; n++) {
+            ca.reset();
+            for (int i = 0, last = -1; i < turns; i++) {
+                int f;
+                do f = rnd.nextInt(6); while (f == last);
+                for (int q = rnd.nextInt(3); q >= 0; q--) ca.domove(f);
+                last = f;
+            }
+            String s = ca.solve();
+            nodes += ca.getNodes();
+            nanos += ca.getNanos();
+            System.out.println(s.length() / 2 + " turns " + s + ", " + ca.getNodes() + " nodes, " +
+                               ca.getNanos() / 1000000 + " ms, " + ca.getNodesPerSecond() + " nodes/s");
+        }
+        System.out.println(count + " solves, " + nodes + " nodes, " + nanos / 1000000 + " ms, " +
+                           (long)(nodes * 1e9 / Math.max(nanos, 1)) + " nodes/s");
+    }
+
+}
@@ -0,0 +1,326 @@
+package cubesolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Pattern databases of OptimalAlgorithm: the exact number of face turns to
+// solve one part of the cube state, whatever the rest of it is.
+//   corners:   permutation of the corners 12..19, 8!, times their twist, 3^7
+//   edges 0-5: slots of the edges 0..5 in order, 12!/6!, times their flips, 2^6
+//   edges 6-11: the same for the edges 6..11
+// Entries are depth + 1 like the other tables, 4 bits each in a
+// NibbleTableStore outside the java heap, 42 MB for the corners and 20 MB
+// for each half of the edges. They are built by breadth first search on all
+// cores, which takes a while on a PC and is not meant for the brick, open()
+// keeps them in a file.
+// Moves are numbered face*3 + quarter turns - 1, faces in FBRLUD order.
+// The tables are not changed after construction, one instance can be shared.
+public class OptimalTables {
+
+    static final int N_MOVE = 18;
+    static final int N_CPERM = 40320;
+    static final int N_TWIST = 2187;
+    static final int N_ESLOT = 665280;
+    static final int N_EFLIP = 64;
+    // pattern databases in the TableStore
+    static final int PRUNE_CORNERS = 0;
+    static final int PRUNE_EDGES0 = 1;
+    static final int PRUNE_EDGES6 = 2;
+    private static final int[] sizes = {N_CPERM * N_TWIST, N_ESLOT * N_EFLIP, N_ESLOT * N_EFLIP};
+    // entries scanned by one task, a multiple of 64 so that no two tasks
+    // write the same byte of a table or int of the found bits
+    private static final int THRESHOLD = 1 << 16;
+
+    // slot an edge goes to from each slot by each move, and its flip change
+    private static final byte[] edgeslot = new byte[N_MOVE * 12];
+    private static final byte[] edgeflip = new byte[N_MOVE * 12];
+
+    static {
+        CubeAlgorithm c = new CubeAlgorithm((SolverTables)null);
+        for (int f = 0; f < 6; f++) {
+            c.reset();
+            for (int q = 0; q < 3; q++) {
+                c.domove(f);
+                // the piece in a slot tells the slot it came from
+                for (int i = 0; i < 12; i++) {
+                    edgeslot[(f * 3 + q) * 12 + c.pos[i]] = (byte)i;
+                    edgeflip[(f * 3 + q) * 12 + c.pos[i]] = c.ori[i];
+                }
+            }
+        }
+    }
+
+    final char[] cpermMove = new char[N_CPERM * N_MOVE];
+    final char[] twistMove = new char[N_TWIST * N_MOVE];
+    // slots coordinate of the 6 edges << 6 | the flips the move changes
+    final int[] eslotMove = new int[N_ESLOT * N_MOVE];
+    // edges 6-11 coordinate of the solved cube, the others are 0
+    final int solved6;
+    final TableStore prune;
+
+    // builds all tables on a pool of all cores
+    public OptimalTables() {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            buildMoveTables();
+            solved6 = getedges(new CubeAlgorithm((SolverTables)null), 6);
+            prune = buildPruneTables(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public OptimalTables(TableStore prune) {
+        if (prune.tableCount() != 3) {
+            throw new IllegalArgumentException("arguments error!");
+        }
+        for (int i = 0; i < 3; i++) {
+            if (prune.size(i) != sizes[i]) {
+                throw new IllegalArgumentException("arguments error!");
+            }
+        }
+        buildMoveTables();
+        solved6 = getedges(new CubeAlgorithm((SolverTables)null), 6);
+        this.prune = prune;
+    }
+
+    // maps the pattern databases from file, they are built and written
+    // first when the file does not exist yet or is not valid.
+    public static OptimalTables open(File file) throws Exception {
+        if (file.exists()) {
+            try {
+                return new OptimalTables(NibbleTableStore.map(file));
+            } catch (IOException e) {
+                // truncated, damaged or of an older format, built again
+            }
+        }
+        OptimalTables t = new OptimalTables();
+        ((NibbleTableStore)t.prune).write(file);
+        return t;
+    }
+
+    static int getcorners(CubeAlgorithm c) {
+        return TwoPhaseTables.getperm(c.pos, 12, 8) * N_TWIST + TwoPhaseTables.gettwist(c.ori);
+    }
+
+    // coordinate of the edges first..first+5: rank of their slots in order
+    // among the unused slots, times 64, plus their flips
+    static int getedges(CubeAlgorithm c, int first) {
+        int r = 0, flips = 0, used = 0;
+        for (int k = 0; k < 6; k++) {
+            int s = 0;
+            while (c.pos[s] != first + k) s++;
+            r = r * (12 - k) + s - Integer.bitCount(used & ((1 << s) - 1));
+            used |= 1 << s;
+            flips |= c.ori[s] << k;
+        }
+        return r * N_EFLIP + flips;
+    }
+
+    // slots of the 6 edges of slots coordinate r
+    private static void setslots(int[] slot, int r) {
+        for (int k = 6; k-- > 0; r /= 12 - k) slot[k] = r % (12 - k);
+        int used = 0;
+        for (int k = 0; k < 6; k++) {
+            int s = -1;
+            for (int n = slot[k]; n >= 0; n--) {
+                do s++; while ((used & (1 << s)) != 0);
+            }
+            slot[k] = s;
+            used |= 1 << s;
+        }
+    }
+
+    private static int getslots(int[] slot) {
+        int r = 0, used = 0;
+        for (int k = 0; k < 6; k++) {
+            int s = slot[k];
+            r = r * (12 - k) + s - Integer.bitCount(used & ((1 << s) - 1));
+            used |= 1 << s;
+        }
+        return r;
+    }
+
+    // entry i of a pattern database after move m
+    int next(int table, int i, int m) {
+        if (table == PRUNE_CORNERS) {
+            return cpermMove[i / N_TWIST * N_MOVE + m] * N_TWIST + twistMove[i % N_TWIST * N_MOVE + m];
+        }
+        return eslotMove[(i >> 6) * N_MOVE + m] ^ (i & 63);
+    }
+
+    private void buildMoveTables() {
+        CubeAlgorithm c = new CubeAlgorithm((SolverTables)null);
+        for (int i = 0; i < N_TWIST; i++) {
+            c.reset();
+            TwoPhaseTables.settwist(c.ori, i);
+            for (int f = 0; f < 6; f++) {
+                for (int q = 0; q < 3; q++) {
+                    c.domove(f);
+                    twistMove[i * N_MOVE + f * 3 + q] = (char)TwoPhaseTables.gettwist(c.ori);
+                }
+                c.domove(f);
+            }
+        }
+        for (int i = 0; i < N_CPERM; i++) {
+            c.reset();
+            TwoPhaseTables.setperm(c.pos, 12, 8, i);
+            for (int f = 0; f < 6; f++) {
+                for (int q = 0; q < 3; q++) {
+                    c.domove(f);
+                    cpermMove[i * N_MOVE + f * 3 + q] = (char)TwoPhaseTables.getperm(c.pos, 12, 8);
+                }
+                c.domove(f);
+            }
+        }
+        int[] slot = new int[6];
+        int[] moved = new int[6];
+        for (int i = 0; i < N_ESLOT; i++) {
+            setslots(slot, i);
+            for (int m = 0; m < N_MOVE; m++) {
+                int flips = 0;
+                for (int k = 0; k < 6; k++) {
+                    moved[k] = edgeslot[m * 12 + slot[k]];
+                    flips |= edgeflip[m * 12 + slot[k]] << k;
+                }
+                eslotMove[i * N_MOVE + m] = getslots(moved) * N_EFLIP | flips;
+            }
+        }
+    }
+
+    private TableStore buildPruneTables(ForkJoinPool pool) {
+        NibbleTableStore t = NibbleTableStore.allocate(sizes);
+        fill(pool, t, PRUNE_CORNERS, 0);
+        fill(pool, t, PRUNE_EDGES0, 0);
+        fill(pool, t, PRUNE_EDGES6, solved6);
+        return t;
+    }
+
+    // Breadth first search from entry start, level by level. While few
+    // entries have depth l they are expanded and the new entries are marked
+    // in a bit set first, so that tasks do not write the same byte. When
+    // more entries have depth l than are left, each entry left looks for a
+    // neighbour of depth l instead. The result does not depend on timing.
+    private void fill(ForkJoinPool pool, NibbleTableStore t, int table, int start) {
+        int size = sizes[table];
+        AtomicIntegerArray found = new AtomicIntegerArray((size + 31) >> 5);
+        t.set(table, start, 1);
+        int left = size - 1;
+        for (int l = 1, n = 1; n != 0; l++) {
+            if (l == 15) {
+                throw new IllegalStateException("pattern database too deep!");
+            }
+            if (n < left) {
+                n = pool.invoke(new LevelTask(this, t, table, found, LevelTask.EXPAND, l, 0, size));
+                pool.invoke(new LevelTask(this, t, table, found, LevelTask.MARK, l, 0, size));
+            } else {
+                n = pool.invoke(new LevelTask(this, t, table, found, LevelTask.LOOKUP, l, 0, size));
+            }
+            left -= n;
+        }
+    }
+
+    // one step of level l of fill on the entries lo..hi-1, returns the
+    // number of new entries
+    private static class LevelTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        // expand the entries of depth l into the found bits
+        static final int EXPAND = 0;
+        // set the found entries to depth l + 1
+        static final int MARK = 1;
+        // set the entries left with a neighbour of depth l to depth l + 1
+        static final int LOOKUP = 2;
+
+        private final OptimalTables ot;
+        private final NibbleTableStore t;
+        private final int table;
+        private final AtomicIntegerArray found;
+        private final int step;
+        private final int l;
+        private final int lo;
+        private final int hi;
+
+        LevelTask(OptimalTables ot, NibbleTableStore t, int table, AtomicIntegerArray found,
+                  int step, int l, int lo, int hi) {
+            this.ot = ot;
+            this.t = t;
+            this.table = table;
+            this.found = found;
+            this.step = step;
+            this.l = l;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (hi - lo > THRESHOLD) {
+                int mid = ((lo + hi) >>> 1) & ~63;
+                LevelTask left = new LevelTask(ot, t, table, found, step, l, lo, mid);
+                left.fork();
+                int n = new LevelTask(ot, t, table, found, step, l, mid, hi).compute();
+                return n + left.join();
+            }
+            int n = 0;
+            if (step == EXPAND) {
+                for (int i = lo; i < hi; i++) {
+                    if (t.get(table, i) != l) {
+                        continue;
+                    }
+                    for (int m = 0; m < N_MOVE; m++) {
+                        int r = ot.next(table, i, m);
+                        if (t.get(table, r) == 0 && setbit(r)) {
+                            n++;
+                        }
+                    }
+                }
+            } else if (step == MARK) {
+                for (int w = lo >> 5; w < (hi + 31) >> 5; w++) {
+                    int bits = found.get(w);
+                    if (bits == 0) {
+                        continue;
+                    }
+                    for (int b = 0; b < 32; b++) {
+                        if ((bits & (1 << b)) != 0) {
+                            t.set(table, w * 32 + b, l + 1);
+                        }
+                    }
+                    found.set(w, 0);
+                }
+            } else {
+                for (int i = lo; i < hi; i++) {
+                    if (t.get(table, i) != 0) {
+                        continue;
+                    }
+                    for (int m = 0; m < N_MOVE; m++) {
+                        if (t.get(table, ot.next(table, i, m)) == l) {
+                            t.set(table, i, l + 1);
+                            n++;
+                            break;
+                        }
+                    }
+                }
+            }
+            return n;
+        }
+
+        // true when entry i was not found before
+        private boolean setbit(int i) {
+            int w = i >> 5, bit = 1 << (i & 31);
+            for (;;) {
+                int bits = found.get(w);
+                if ((bits & bit) != 0) {
+                    return false;
+                }
+                if (found.compareAndSet(w, bits, bits | bit)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package cubesolver;
+
+import java.util.Arrays;
+
+// The 24 orientations of the cube on the robot and how CubeAlgorithm
+// reorients it to turn a face. Orientation 0 is the scanned orientation.
+public class OrientationTable {
+
+    static final int N_ORI = 24;
+
+    // faces_cm of each orientation
+    final int[][] faces = new int[N_ORI][];
+    // [orientation * 6 + face]: orientation after the reorientation
+    final int[] next = new int[N_ORI * 6];
+    // [orientation * 6 + face]: spin/tilt ops of the reorientation, like "S2R1"
+    final String[] ops = new String[N_ORI * 6];
+    // [orientation * 4 + amount]: orientation after a spin or a tilt
+    final int[] spin = new int[N_ORI * 4];
+    final int[] tilt = new int[N_ORI * 4];
+
+    public OrientationTable() {
+        CubeAlgorithm c = new CubeAlgorithm((SolverTables)null);
+        byte[] ms = new byte[8];
+        int n = 1;
+        faces[0] = new int[] {0, 1, 2, 3, 4, 5};
+        for (int o = 0; o < n; o++) {
+            for (int f = 0; f < 6; f++) {
+                int[] faces_cm = faces[o].clone();
+                int[] faces_mc = new int[6];
+                for (int i = 0; i < 6; i++) faces_mc[faces_cm[i]] = i;
+                int len = c.tosrt(f, 1, faces_mc, faces_cm, ms, 0);
+                // without the turn at the end
+                ops[o * 6 + f] = new String(ms, 0, len - 2);
+                int k = indexof(faces_cm, n);
+                if (k == n) {
+                    faces[n++] = faces_cm;
+                }
+                next[o * 6 + f] = k;
+            }
+        }
+        for (int o = 0; o < N_ORI; o++) {
+            for (int a = 0; a < 4; a++) {
+                spin[o * 4 + a] = find(roll(faces[o], a, CubeAlgorithm.order_s));
+                tilt[o * 4 + a] = find(roll(faces[o], a, CubeAlgorithm.order_r));
+            }
+        }
+    }
+
+    private static int[] roll(int[] faces_cm, int step, int[] ord) {
+        int[] cm = faces_cm.clone();
+        CubeAlgorithm.rollorspin(step, ord, new int[6], cm);
+        return cm;
+    }
+
+    // orientation of faces_cm
+    int find(int[] faces_cm) {
+        int k = indexof(faces_cm, N_ORI);
+        if (k == N_ORI) {
+            throw new IllegalStateException("no orientation!");
+        }
+        return k;
+    }
+
+    private int indexof(int[] faces_cm, int n) {
+        for (int k = 0; k < n; k++) {
+            if (Arrays.equals(faces[k], faces_cm)) {
+                return k;
+            }
+        }
+        return n;
+    }
+
+    // [orientation * 6 + face]: time of the reorientation under model
+    int[] costs(RobotCostModel model) {
+        int[] c = new int[N_ORI * 6];
+        for (int i = 0; i < c.length; i++) c[i] = RobotCost.total(model, ops[i]);
+        return c;
+    }
+
+}
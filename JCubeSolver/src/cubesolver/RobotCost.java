@@ -0,0 +1,56 @@
+package cubesolver;
+
+// Robot cost model with a fixed weight per op and amount.
+public class RobotCost implements RobotCostModel {
+
+    // estimates from the motor speeds and delays in CubeSolver
+    public static final RobotCost EV3 = new RobotCost(new int[] {
+        // S1, S2, S3
+        450, 800, 450,
+        // R1, R2, R3
+        1200, 2900, 4600,
+        // T1, T2, T3
+        700, 1050, 700
+    });
+
+    private final int[] weight;
+
+    // weights in ms for S1 S2 S3 R1 R2 R3 T1 T2 T3
+    public RobotCost(int[] weight) {
+        if (weight.length != 9) {
+            throw new IllegalArgumentException("arguments error!");
+        }
+        this.weight = weight.clone();
+    }
+
+    @Override
+    public int cost(int op, int amount) {
+        int i = op == 'S' ? 0 : op == 'R' ? 3 : 6;
+        return weight[i + amount - 1];
+    }
+
+    // time in ms of a robot program like "S2R1T3"
+    public static int total(RobotCostModel model, String program) {
+        int t = 0;
+        for (int i = 0; i + 1 < program.length(); i += 2) {
+            int amount = program.charAt(i + 1) - '0';
+            if (amount != 0) {
+                t += model.cost(program.charAt(i), amount);
+            }
+        }
+        return t;
+    }
+
+    // the same for the program in ms[0..len)
+    static int total(RobotCostModel model, byte[] ms, int len) {
+        int t = 0;
+        for (int i = 0; i + 1 < len; i += 2) {
+            int amount = ms[i + 1] - '0';
+            if (amount != 0) {
+                t += model.cost(ms[i], amount);
+            }
+        }
+        return t;
+    }
+
+}
@@ -0,0 +1,9 @@
+package cubesolver;
+
+// Execution time of the robot ops that CubeAlgorithm emits in output mode 1.
+public interface RobotCostModel {
+
+    // time in ms of op 'S' (spin), 'R' (tilt) or 'T' (turn), amount 1..3
+    int cost(int op, int amount);
+
+}
@@ -0,0 +1,85 @@
+package cubesolver;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// A solve on its own thread that hands over the robot ops phase by phase.
+// The ops of a phase are final once the phase is solved (only its last op
+// can still merge with the first op of the next phase, it is held back till
+// then), so the robot can run them while the later phases are searched.
+// Solvers without phases, like TwoPhaseAlgorithm, give all ops at the end.
+public class SolveStream {
+
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<byte[]>();
+    private final byte[] ms;
+    // bytes of ms handed over so far
+    private int sent;
+    private volatile int length = -1;
+    private volatile RuntimeException error;
+
+    private SolveStream(byte[] ms) {
+        this.ms = ms;
+    }
+
+    // Starts solving the cube state of ca into ms, see
+    // CubeAlgorithm.solve(ms, deadline, token). ca and ms must not be used
+    // by the caller until take() has returned null or thrown.
+    public static SolveStream start(final CubeAlgorithm ca, byte[] ms, final long deadline, final CancelToken token) {
+        final SolveStream s = new SolveStream(ms);
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                s.run(ca, deadline, token);
+            }
+        }, "solver");
+        t.setDaemon(true);
+        t.start();
+        return s;
+    }
+
+    private void run(CubeAlgorithm ca, long deadline, CancelToken token) {
+        try {
+            ca.stream = this;
+            int len = ca.solve(ms, deadline, token);
+            if (len > sent) {
+                put(sent, len);
+            }
+            length = len;
+        } catch (RuntimeException e) {
+            error = e;
+        } finally {
+            ca.stream = null;
+            queue.add(END);
+        }
+    }
+
+    // hands over ms[from..to), called by the solving thread
+    void put(int from, int to) {
+        queue.add(Arrays.copyOfRange(ms, from, to));
+        sent = to;
+    }
+
+    // Waits for the next ops, null when the solve is done. Throws what the
+    // solve threw, e.g. for a cube state rejected by validate().
+    public byte[] take() throws InterruptedException {
+        byte[] ops = queue.take();
+        if (ops != END) {
+            return ops;
+        }
+        // keep returning the end
+        queue.add(END);
+        if (error != null) {
+            throw error;
+        }
+        return null;
+    }
+
+    // length of the whole solution in ms, -1 before the end
+    public int getLength() {
+        return length;
+    }
+
+}
@@ -0,0 +1,72 @@
+package cubesolver;
+
+import java.io.File;
+
+// The read only tables of CubeAlgorithm: pruning tables, coordinate move
+// tables, symmetry reduced tables of the last phases and robot orientations. They are not changed once built,
+// so one instance is shared by any number of solver contexts and threads.
+// The move and symmetry tables take most of the startup time on the brick,
+// they are built phase by phase when a solve first needs them, or ahead on
+// a background thread, see preload().
+public class SolverTables {
+
+    final TableStore tables;
+    final MoveTables movetables;
+    final OrientationTable orient;
+    // made with the tables of phase 4, see prepare
+    private SymTables symtables;
+    // phases up to here have their tables built
+    private int prepared = -2;
+
+    public SolverTables(TableStore tables) {
+        this.tables = tables;
+        movetables = new MoveTables(tables);
+        orient = new OrientationTable();
+    }
+
+    // Builds the tables of the phases up to p (0, 2, 4 or 6) that are not
+    // built yet and returns the symmetry tables, null before phase 4. The
+    // symmetry tables need the move tables of phases 4 and 6, so both are
+    // built together.
+    synchronized SymTables prepare(int p) {
+        int last = p >= 4 ? 6 : p;
+        while (prepared < last) {
+            int q = prepared + 2;
+            movetables.build(q);
+            movetables.build(q + 1);
+            if (q == 6) {
+                symtables = new SymTables(movetables);
+            }
+            prepared = q;
+        }
+        return p >= 4 ? symtables : null;
+    }
+
+    // Starts building the tables of all phases on a background thread, so
+    // that the robot can home meanwhile. A solve only waits for the tables
+    // of a phase that are not built yet.
+    public SolverTables preload() {
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int p = 0; p < 8; p += 2) {
+                    prepare(p);
+                }
+            }
+        }, "tables");
+        t.setDaemon(true);
+        t.start();
+        return this;
+    }
+
+    // tables from the tabledata resource, packed on the heap
+    public static SolverTables load() throws Exception {
+        return new SolverTables(NibbleTableStore.pack(CubeAlgorithm.loadTables()));
+    }
+
+    // tables memory mapped from a packed file, see NibbleTableStore.open
+    public static SolverTables open(File file) throws Exception {
+        return new SolverTables(NibbleTableStore.open(file));
+    }
+
+}
@@ -0,0 +1,125 @@
+package cubesolver;
+
+import java.util.concurrent.CancellationException;
+
+// Solves a few built-in scrambles on a background thread, so that the JIT
+// has compiled the searches (searchphase, domove, getposition and the move
+// table searches) before the first real solve. The robot starts it while
+// resetDevices() waits for the motors to stall, when the cpu is mostly
+// idle. It solves on its own context with the settings of the robot's
+// solver (the lookahead on a shorter budget), whose cache and stats are
+// not touched. The first scramble is solved again at the end, its two
+// times show the gain.
+public class SolverWarmup {
+
+    // face turns in output mode 0
+    private static final String[] scrambles = {
+        "R1F3L2U3R1B2U1B3U1F1U2F3U2F1B3L3B3R3L3R3L3R3",
+        "F2R3U3L3B1R3L3D1U1F1U1D2U2D2F2L3R2D1R1F3B3U1",
+        "R3B3D1L1U1F3U2F1R3F1B3U3F2B2U1F1L2D1L2B1F3D3",
+        "B3D3B2F2R1U2L1D3L1B3L2U2D3U1R1F3R2D3L1B3F2D3"
+    };
+
+    // lookahead budget of a warm-up solve in ms, enough to compile the
+    // candidate search while the warm-up still ends during homing
+    private static final long LOOKAHEAD_BUDGET = 200;
+
+    private final SolverTables tables;
+    private final CubeAlgorithm ca;
+    private final CancelToken token = new CancelToken();
+    private Thread thread;
+    // times of the first scramble in ns, the first and the last solve
+    private volatile long coldnanos = -1;
+    private volatile long warmnanos = -1;
+    private volatile int solved;
+
+    private SolverWarmup(SolverTables tables, CubeAlgorithm ca) {
+        this.tables = tables;
+        this.ca = ca;
+    }
+
+    // Starts the warm-up on a context on tables with the settings of
+    // solver. The thread runs at the lowest priority, under the motor
+    // regulators.
+    public static SolverWarmup start(SolverTables tables, CubeAlgorithm solver) {
+        CubeAlgorithm ca = new CubeAlgorithm(tables);
+        solver.copysettings(ca);
+        solver.copylookahead(ca, LOOKAHEAD_BUDGET);
+        ca.setModeO(1);
+        final SolverWarmup w = new SolverWarmup(tables, ca);
+        w.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                w.run();
+            }
+        }, "warmup");
+        w.thread.setDaemon(true);
+        w.thread.setPriority(Thread.MIN_PRIORITY);
+        w.thread.start();
+        return w;
+    }
+
+    private void run() {
+        byte[] ms = new byte[CubeAlgorithm.OUTPUT_SIZE];
+        // the tables of all phases first, the times are of the search only.
+        // The tables of a phase are built at once, stop() is seen between
+        // the phases.
+        for (int p = 0; p < 8 && !token.isCancelled(); p += 2) {
+            tables.prepare(p);
+        }
+        try {
+            for (int i = 0; i <= scrambles.length && !token.isCancelled(); i++) {
+                String s = scrambles[i % scrambles.length];
+                ca.reset();
+                for (int k = 0; k < s.length(); k += 2) {
+                    for (int q = s.charAt(k + 1) - '0'; q > 0; q--) {
+                        ca.domove("FBRLUD".indexOf(s.charAt(k)));
+                    }
+                }
+                long start = System.nanoTime();
+                ca.solve(ms, 0, token);
+                long t = System.nanoTime() - start;
+                if (i == 0) {
+                    coldnanos = t;
+                } else if (i == scrambles.length) {
+                    warmnanos = t;
+                }
+                solved++;
+            }
+        } catch (CancellationException e) {
+            // stopped for a real solve
+        }
+    }
+
+    // Cancels the warm-up when it is still running and waits for it, called
+    // before the first real solve so that both do not share the cpu.
+    public void stop() throws InterruptedException {
+        token.cancel();
+        thread.join();
+    }
+
+    // solve time of the first scramble cold, -1 when not solved
+    public long getColdNanos() {
+        return coldnanos;
+    }
+
+    // solve time of the first scramble again at the end, -1 when not solved
+    public long getWarmNanos() {
+        return warmnanos;
+    }
+
+    public int getSolved() {
+        return solved;
+    }
+
+    // for the log
+    @Override
+    public String toString() {
+        return "warm-up: " + solved + " solves, cold " + ms(coldnanos) + ", warm " + ms(warmnanos);
+    }
+
+    private static String ms(long ns) {
+        return ns < 0 ? "-" : ns / 1000000 + "." + ns / 100000 % 10 + " ms";
+    }
+
+}
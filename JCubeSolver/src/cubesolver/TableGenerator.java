@@ -0,0 +1,198 @@
+package cubesolver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+
+// Builds the 8 pruning tables of CubeAlgorithm by breadth first search from
+// the solved cube. Every table is searched level by level, each level is
+// split into ranges of positions and the ranges are expanded in parallel on
+// a fork/join pool. It can run as a build step to write the tabledata
+// resource, or at first startup when the resource is missing.
+public class TableGenerator {
+
+    private static final byte CHAROFFSET = 'A';
+    // CRC32 of the tabledata resource
+    static final long TABLEDATA_CRC = 0xd1a186d8L;
+    // number of positions scanned by one task
+    private static final int THRESHOLD = 512;
+
+    // Generates the tables, depth 1 is the solved position, 0 means not reachable.
+    public static byte[][] generate() {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return generate(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static byte[][] generate(ForkJoinPool pool) {
+        byte[][] tables = new byte[8][];
+        TableTask[] tasks = new TableTask[8];
+        for (int i = 0; i < 8; i++) {
+            tables[i] = new byte[CubeAlgorithm.tablesize[i]];
+            tasks[i] = new TableTask(i, tables[i]);
+        }
+        pool.invoke(new AllTablesTask(tasks));
+        return tables;
+    }
+
+    // tables -> tabledata resource content
+    public static byte[] encode(byte[][] tables) {
+        byte[] buf = new byte[CubeAlgorithm.TABLEDATA_SIZE];
+        int k = 0;
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < tables[i].length; j++) {
+                buf[k++] = (byte)(tables[i][j] + CHAROFFSET);
+            }
+        }
+        return buf;
+    }
+
+    // tabledata resource content -> tables
+    public static byte[][] decode(byte[] buf) {
+        byte[][] tables = new byte[8][];
+        int k = 0;
+        for (int i = 0; i < 8; i++) {
+            tables[i] = new byte[CubeAlgorithm.tablesize[i]];
+            for (int j = 0; j < CubeAlgorithm.tablesize[i]; j++) {
+                tables[i][j] = (byte)(buf[k++] - CHAROFFSET);
+            }
+        }
+        return tables;
+    }
+
+    public static long checksum(byte[] buf) {
+        CRC32 crc = new CRC32();
+        crc.update(buf, 0, buf.length);
+        return crc.getValue();
+    }
+
+    private static class AllTablesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final TableTask[] tasks;
+
+        AllTablesTask(TableTask[] tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
+
+    // breadth first search of one table
+    private static class TableTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int ti;
+        private final byte[] tb;
+
+        TableTask(int ti, byte[] tb) {
+            this.ti = ti;
+            this.tb = tb;
+        }
+
+        @Override
+        protected void compute() {
+            CubeAlgorithm ca = new CubeAlgorithm((SolverTables)null);
+            // mark solved position as depth 1
+            tb[ca.getposition(ti)] = 1;
+            // while there are positions of depth l
+            for (int l = 1, n = 1; n != 0; l++) {
+                n = new LevelTask(ti, tb, l, 0, tb.length).invoke();
+            }
+        }
+    }
+
+    // expands the positions of depth l in range lo..hi-1 and returns the
+    // number of new positions found. Two tasks may reach the same position,
+    // both then store the same depth so the result does not depend on timing.
+    private static class LevelTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final int ti;
+        private final byte[] tb;
+        private final int l;
+        private final int lo;
+        private final int hi;
+
+        LevelTask(int ti, byte[] tb, int l, int lo, int hi) {
+            this.ti = ti;
+            this.tb = tb;
+            this.l = l;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (hi - lo > THRESHOLD) {
+                int mid = (lo + hi) >>> 1;
+                LevelTask left = new LevelTask(ti, tb, l, lo, mid);
+                left.fork();
+                int n = new LevelTask(ti, tb, l, mid, hi).compute();
+                return n + left.join();
+            }
+            int n = 0;
+            CubeAlgorithm ca = null;
+            for (int i = lo; i < hi; i++) {
+                if (tb[i] != l) {
+                    continue;
+                }
+                if (ca == null) {
+                    ca = new CubeAlgorithm((SolverTables)null);
+                }
+                //construct that cube position
+                ca.setposition(ti, i);
+                // try each face any amount
+                for (int f = 0; f < 6; f++) {
+                    for (int q = 1; q < 4; q++) {
+                        ca.domove(f);
+                        // get resulting position
+                        int r = ca.getposition(ti);
+                        // if move is allowed in that phase, and position is a new one
+                        if ((q == 2 || f >= (ti&6)) && tb[r] == 0) {
+                            // mark that position as depth l+1
+                            tb[r] = (byte)(l + 1);
+                            n++;
+                        }
+                    }
+                    ca.domove(f);
+                }
+            }
+            return n;
+        }
+    }
+
+    // Usage: TableGenerator [output file], writes the tabledata resource
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "tabledata";
+        int cores = Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        byte[] buf = encode(generate());
+        long elapsed = System.nanoTime() - start;
+        long crc = checksum(buf);
+        System.out.println("Generated " + buf.length + " bytes on " + cores + " cores in " +
+                           (elapsed / 1000000) + " ms");
+        System.out.println("CRC32 " + Long.toHexString(crc) +
+                           (crc == TABLEDATA_CRC ? " OK" : " MISMATCH, expected " + Long.toHexString(TABLEDATA_CRC)));
+        if (crc != TABLEDATA_CRC) {
+            System.exit(1);
+        }
+        OutputStream out = new FileOutputStream(new File(path));
+        try {
+            out.write(buf);
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package cubesolver;
+
+// Read only access to the pruning tables. An entry is the depth of a
+// position plus 1, 0 for positions not reachable in that phase.
+public interface TableStore {
+
+    int tableCount();
+
+    int size(int table);
+
+    int get(int table, int index);
+
+}
@@ -0,0 +1,175 @@
+package cubesolver;
+
+// Two-phase solver, an alternative to the 4 phase Thistlethwaite search of
+// CubeAlgorithm with the same setInput(...) / solve() API and output.
+// Phase 1 brings the cube into <U,D,R2,L2,F2,B2>, phase 2 solves it within
+// that group. Longer phase 1 solutions are tried until the total length is
+// at most maxLength, which usually gives solutions of 20-22 face turns.
+public class TwoPhaseAlgorithm extends CubeAlgorithm {
+
+    private static final int NM = TwoPhaseTables.N_MOVE;
+    private static final int NM2 = TwoPhaseTables.ph2move.length;
+
+    private final TwoPhaseTables tt;
+    private int maxLength = 22;
+    // found moves, face and quarter turns
+    private int[] ax = new int[31];
+    private int[] po = new int[31];
+    private int solLength;
+    // cube state at the end of phase 1
+    private CubeAlgorithm ph1cube;
+    // the cube state to solve and at the end of phase 1, packed
+    private final PackedCube start = new PackedCube();
+    private final PackedCube ph1packed = new PackedCube();
+
+    public TwoPhaseAlgorithm() {
+        this(new TwoPhaseTables());
+    }
+
+    public TwoPhaseAlgorithm(TwoPhaseTables tables) {
+        super((SolverTables)null);
+        tt = tables;
+        ph1cube = new CubeAlgorithm((SolverTables)null);
+    }
+
+    // maximum number of face turns of a solution, at least 20
+    public TwoPhaseAlgorithm setMaxLength(int length) {
+        if (length < 20 || length > 30) {
+            throw new IllegalArgumentException("arguments error!");
+        }
+        maxLength = length;
+        return this;
+    }
+
+    @Override
+    public int solve(byte[] ms) {
+        check();
+        int len = fromcache(ms);
+        if (len >= 0) {
+            return len;
+        }
+        start.set(this);
+        int twist = TwoPhaseTables.gettwist(ori);
+        int flip = TwoPhaseTables.getflip(ori);
+        int slice = TwoPhaseTables.getslice(pos);
+        solLength = -1;
+        for (int depth = 0; depth <= limit(); depth++) {
+            if (phase1(twist, flip, slice, 0, depth, 9)) {
+                break;
+            }
+        }
+        checkcancel();
+        if (solLength < 0) {
+            throw new IllegalStateException("no solution found!");
+        }
+        resetfaces();
+        for (int i = 0; i < solLength; i++) {
+            pushturn(ax[i], po[i]);
+        }
+        complete = !stopped;
+        len = compactstep(ms, flushturns(ms, 0, true));
+        tocache();
+        return len;
+    }
+
+    // past the deadline of solve(ms, deadline, token) the first phase 2
+    // solution is taken whatever its total length
+    private int limit() {
+        return stopped ? 30 : maxLength;
+    }
+
+    // do not repeat same face, and turn opposite faces in one order only
+    private static boolean skipface(int f, int lastface) {
+        return f == lastface || ((f ^ 1) == lastface && f < lastface);
+    }
+
+    private boolean phase1(int twist, int flip, int slice, int depth, int togo, int lastface) {
+        nodes++;
+        if (timeout() && cancelled()) {
+            return true;
+        }
+        if (togo == 0) {
+            // a phase 1 solution ending with a phase 2 move was already
+            // tried one depth before, with that move in phase 2.
+            if (twist == 0 && flip == 0 && slice == 0 &&
+                (depth == 0 || (po[depth - 1] != 2 && ax[depth - 1] < 4))) {
+                return phase2start(depth);
+            }
+            return false;
+        }
+        for (int f = 0; f < 6; f++) {
+            if (skipface(f, lastface)) {
+                continue;
+            }
+            for (int q = 0; q < 3; q++) {
+                int m = f * 3 + q;
+                int t = tt.twistMove[twist * NM + m];
+                int fl = tt.flipMove[flip * NM + m];
+                int s = tt.sliceMove[slice * NM + m];
+                // prune - position must still reach phase 2 in the remaining moves
+                if (tt.prune.get(TwoPhaseTables.PRUNE_TWIST, t * TwoPhaseTables.N_SLICE + s) - 1 > togo - 1 ||
+                    tt.prune.get(TwoPhaseTables.PRUNE_FLIP, fl * TwoPhaseTables.N_SLICE + s) - 1 > togo - 1) {
+                    continue;
+                }
+                ax[depth] = f;
+                po[depth] = q + 1;
+                if (phase1(t, fl, s, depth + 1, togo - 1, f)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean phase2start(int depth1) {
+        // apply the phase 1 moves to get the phase 2 coordinates
+        ph1packed.set(start);
+        for (int i = 0; i < depth1; i++) ph1packed.move(ax[i] * 3 + po[i] - 1);
+        ph1packed.get(ph1cube);
+        int cperm = TwoPhaseTables.getperm(ph1cube.pos, 12, 8);
+        int eperm = TwoPhaseTables.getperm(ph1cube.pos, 0, 8);
+        int sperm = TwoPhaseTables.getperm(ph1cube.pos, 8, 4);
+        int lastface = depth1 > 0 ? ax[depth1 - 1] : 9;
+        for (int depth2 = ph2prune(cperm, eperm, sperm); depth1 + depth2 <= limit(); depth2++) {
+            if (phase2(cperm, eperm, sperm, depth1, depth2, lastface)) {
+                solLength = depth1 + depth2;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int ph2prune(int cperm, int eperm, int sperm) {
+        return Math.max(tt.prune.get(TwoPhaseTables.PRUNE_CPERM, cperm * TwoPhaseTables.N_SPERM + sperm),
+                        tt.prune.get(TwoPhaseTables.PRUNE_EPERM, eperm * TwoPhaseTables.N_SPERM + sperm)) - 1;
+    }
+
+    private boolean phase2(int cperm, int eperm, int sperm, int depth, int togo, int lastface) {
+        nodes++;
+        if (timeout() && cancelled()) {
+            return false;
+        }
+        if (togo == 0) {
+            return cperm == 0 && eperm == 0 && sperm == 0;
+        }
+        for (int m = 0; m < NM2; m++) {
+            int f = TwoPhaseTables.ph2move[m] / 3;
+            if (skipface(f, lastface)) {
+                continue;
+            }
+            int c = tt.cpermMove[cperm * NM2 + m];
+            int e = tt.epermMove[eperm * NM2 + m];
+            int s = tt.spermMove[sperm * NM2 + m];
+            if (ph2prune(c, e, s) > togo - 1) {
+                continue;
+            }
+            ax[depth] = f;
+            po[depth] = TwoPhaseTables.ph2move[m] % 3 + 1;
+            if (phase2(c, e, s, depth + 1, togo - 1, f)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,244 @@
+package cubesolver;
+
+import java.io.File;
+import java.io.IOException;
+
+// Coordinate move tables and pruning tables of the two-phase algorithm.
+// Moves are numbered face*3 + quarter turns - 1, faces in FBRLUD order.
+//
+// phase 1 brings the cube into <U,D,R2,L2,F2,B2>, its coordinates are
+//   twist: orientation of corners 12..18, 3^7
+//   flip:  orientation of edges 0..10, 2^11
+//   slice: positions of the middle slice edges 8..11, 12 choose 4
+// phase 2 solves it with those moves, its coordinates are
+//   cperm: permutation of the corners 12..19, 8!
+//   eperm: permutation of the UD edges 0..7, 8!
+//   sperm: permutation of the middle slice edges 8..11, 4!
+// The tables are not changed after construction, one instance can be shared.
+public class TwoPhaseTables {
+
+    static final int N_TWIST = 2187;
+    static final int N_FLIP = 2048;
+    static final int N_SLICE = 495;
+    static final int N_PERM = 40320;
+    static final int N_SPERM = 24;
+    static final int N_MOVE = 18;
+    // phase 2 moves: U1 U2 U3 D1 D2 D3 F2 B2 R2 L2
+    static final int[] ph2move = {12, 13, 14, 15, 16, 17, 1, 4, 7, 10};
+    // pruning tables in the TableStore
+    static final int PRUNE_TWIST = 0;
+    static final int PRUNE_FLIP = 1;
+    static final int PRUNE_CPERM = 2;
+    static final int PRUNE_EPERM = 3;
+
+    private static final int[][] binom = new int[12][5];
+
+    static {
+        for (int n = 0; n < 12; n++) {
+            binom[n][0] = 1;
+            for (int k = 1; k < 5; k++) {
+                binom[n][k] = n == 0 ? 0 : binom[n - 1][k - 1] + binom[n - 1][k];
+            }
+        }
+    }
+
+    final char[] twistMove = new char[N_TWIST * N_MOVE];
+    final char[] flipMove = new char[N_FLIP * N_MOVE];
+    final char[] sliceMove = new char[N_SLICE * N_MOVE];
+    final char[] cpermMove = new char[N_PERM * ph2move.length];
+    final char[] epermMove = new char[N_PERM * ph2move.length];
+    final char[] spermMove = new char[N_SPERM * ph2move.length];
+    // twist*495+slice, flip*495+slice, cperm*24+sperm, eperm*24+sperm
+    final TableStore prune;
+
+    // builds all tables, this takes a few seconds on the brick
+    public TwoPhaseTables() {
+        buildMoveTables();
+        prune = NibbleTableStore.pack(buildPruneTables());
+    }
+
+    public TwoPhaseTables(TableStore prune) {
+        if (prune.tableCount() != 4 || prune.size(PRUNE_TWIST) != N_TWIST * N_SLICE ||
+            prune.size(PRUNE_FLIP) != N_FLIP * N_SLICE || prune.size(PRUNE_CPERM) != N_PERM * N_SPERM ||
+            prune.size(PRUNE_EPERM) != N_PERM * N_SPERM) {
+            throw new IllegalArgumentException("arguments error!");
+        }
+        buildMoveTables();
+        this.prune = prune;
+    }
+
+    // maps the packed pruning tables from file, they are generated and
+    // written first when the file does not exist yet or is not valid.
+    public static TwoPhaseTables open(File file) throws Exception {
+        if (file.exists()) {
+            try {
+                return new TwoPhaseTables(NibbleTableStore.map(file));
+            } catch (IOException e) {
+                // truncated, damaged or of an older format, built again
+            }
+        }
+        TwoPhaseTables t = new TwoPhaseTables();
+        ((NibbleTableStore)t.prune).write(file);
+        return t;
+    }
+
+    static int gettwist(byte[] ori) {
+        int n = 0;
+        for (int i = 12; i < 19; i++) n = n * 3 + ori[i];
+        return n;
+    }
+
+    static void settwist(byte[] ori, int n) {
+        int s = 0;
+        for (int i = 19; --i > 11; n /= 3) s += ori[i] = (byte)(n % 3);
+        ori[19] = (byte)((15 - s) % 3);
+    }
+
+    static int getflip(byte[] ori) {
+        int n = 0;
+        for (int i = 0; i < 11; i++) n = n * 2 + ori[i];
+        return n;
+    }
+
+    static void setflip(byte[] ori, int n) {
+        int s = 0;
+        for (int i = 11; --i >= 0; n >>= 1) s += ori[i] = (byte)(n & 1);
+        ori[11] = (byte)(s & 1);
+    }
+
+    // combination number of the slice edge positions, counted from the
+    // back so that the solved cube is 0.
+    static int getslice(byte[] pos) {
+        int n = 0, k = 0;
+        for (int i = 12; i-- > 0;)
+            if (pos[i] >= 8) n += binom[11 - i][++k];
+        return n;
+    }
+
+    static void setslice(byte[] pos, int n) {
+        int e = 0, s = 8;
+        boolean[] slice = new boolean[12];
+        for (int k = 4; k > 0; k--) {
+            int q = 11;
+            while (binom[q][k] > n) q--;
+            n -= binom[q][k];
+            slice[11 - q] = true;
+        }
+        for (int i = 0; i < 12; i++) pos[i] = (byte)(slice[i] ? s++ : e++);
+    }
+
+    // rank of the permutation p[o..o+n-1] of the values o..o+n-1
+    static int getperm(byte[] p, int o, int n) {
+        int r = 0;
+        for (int a = 0; a < n; a++) {
+            r *= n - a;
+            for (int b = a; ++b < n;)
+                if (p[b + o] < p[a + o]) r++;
+        }
+        return r;
+    }
+
+    static void setperm(byte[] p, int o, int n, int r) {
+        p[n - 1 + o] = (byte)o;
+        for (int a = n - 1; a-- > 0;) {
+            p[a + o] = (byte)(r % (n - a) + o);
+            r /= n - a;
+            for (int b = a; ++b < n;)
+                if (p[b + o] >= p[a + o]) p[b + o]++;
+        }
+    }
+
+    private void buildMoveTables() {
+        CubeAlgorithm c = new CubeAlgorithm((SolverTables)null);
+        for (int i = 0; i < N_TWIST; i++) {
+            c.reset();
+            settwist(c.ori, i);
+            for (int f = 0; f < 6; f++) {
+                for (int q = 0; q < 3; q++) {
+                    c.domove(f);
+                    twistMove[i * N_MOVE + f * 3 + q] = (char)gettwist(c.ori);
+                }
+                c.domove(f);
+            }
+        }
+        for (int i = 0; i < N_FLIP; i++) {
+            c.reset();
+            setflip(c.ori, i);
+            for (int f = 0; f < 6; f++) {
+                for (int q = 0; q < 3; q++) {
+                    c.domove(f);
+                    flipMove[i * N_MOVE + f * 3 + q] = (char)getflip(c.ori);
+                }
+                c.domove(f);
+            }
+        }
+        for (int i = 0; i < N_SLICE; i++) {
+            c.reset();
+            setslice(c.pos, i);
+            for (int f = 0; f < 6; f++) {
+                for (int q = 0; q < 3; q++) {
+                    c.domove(f);
+                    sliceMove[i * N_MOVE + f * 3 + q] = (char)getslice(c.pos);
+                }
+                c.domove(f);
+            }
+        }
+        int nm = ph2move.length;
+        for (int i = 0; i < N_PERM; i++) {
+            for (int m = 0; m < nm; m++) {
+                c.reset();
+                setperm(c.pos, 12, 8, i);
+                for (int q = ph2move[m] % 3; q >= 0; q--) c.domove(ph2move[m] / 3);
+                cpermMove[i * nm + m] = (char)getperm(c.pos, 12, 8);
+                c.reset();
+                setperm(c.pos, 0, 8, i);
+                for (int q = ph2move[m] % 3; q >= 0; q--) c.domove(ph2move[m] / 3);
+                epermMove[i * nm + m] = (char)getperm(c.pos, 0, 8);
+            }
+        }
+        for (int i = 0; i < N_SPERM; i++) {
+            for (int m = 0; m < nm; m++) {
+                c.reset();
+                setperm(c.pos, 8, 4, i);
+                for (int q = ph2move[m] % 3; q >= 0; q--) c.domove(ph2move[m] / 3);
+                spermMove[i * nm + m] = (char)getperm(c.pos, 8, 4);
+            }
+        }
+    }
+
+    private byte[][] buildPruneTables() {
+        byte[][] t = new byte[4][];
+        t[PRUNE_TWIST] = fillprune(twistMove, N_TWIST, N_MOVE);
+        t[PRUNE_FLIP] = fillprune(flipMove, N_FLIP, N_MOVE);
+        t[PRUNE_CPERM] = fillprune(cpermMove, N_PERM, ph2move.length);
+        t[PRUNE_EPERM] = fillprune(epermMove, N_PERM, ph2move.length);
+        return t;
+    }
+
+    // breadth first search over coordinate a * n2 + b, where b is the slice
+    // coordinate of the phase. Entries are depth + 1 like the other tables.
+    private byte[] fillprune(char[] amove, int n1, int nm) {
+        char[] bmove = nm == N_MOVE ? sliceMove : spermMove;
+        int n2 = nm == N_MOVE ? N_SLICE : N_SPERM;
+        byte[] tb = new byte[n1 * n2];
+        tb[0] = 1;
+        for (int l = 1, n = 1; n != 0; l++) {
+            n = 0;
+            for (int i = 0; i < tb.length; i++) {
+                if (tb[i] != l) {
+                    continue;
+                }
+                int a = i / n2, b = i % n2;
+                for (int m = 0; m < nm; m++) {
+                    int r = amove[a * nm + m] * n2 + bmove[b * nm + m];
+                    if (tb[r] == 0) {
+                        tb[r] = (byte)(l + 1);
+                        n++;
+                    }
+                }
+            }
+        }
+        return tb;
+    }
+
+}
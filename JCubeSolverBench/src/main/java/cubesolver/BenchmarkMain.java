@@ -0,0 +1,24 @@
+package cubesolver;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs the benchmarks and writes the results as JSON, by default to
+// jmh-result.json. The usual JMH options can be given, e.g.
+//   java -jar target/benchmarks.jar SolveBenchmark -p modeS=1 -rff solve.json
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        Options opt = new OptionsBuilder()
+            .parent(cmd)
+            .resultFormat(cmd.getResultFormat().hasValue() ? cmd.getResultFormat().get() : ResultFormatType.JSON)
+            .result(cmd.getResult().hasValue() ? cmd.getResult().get() : "jmh-result.json")
+            .build();
+        new Runner(opt).run();
+    }
+
+}
@@ -0,0 +1,83 @@
+package cubesolver;
+
+import java.util.Random;
+
+// Fixed corpus of random reachable cube states. Every state is made by
+// random face turns from the solved cube, so the same seed always gives
+// the same states. Each state is kept in the three forms the solver takes:
+// cube state, 20 piece tokens for setInput(String) and 54 facelets for
+// setInput(byte[]).
+public class Corpus {
+
+    public static final long SEED = 20161018L;
+    // piece names in the internal order of CubeAlgorithm, the face with the
+    // highest value in RLFBUD order first
+    private static final String[] pieces = {
+        "UF", "DF", "UB", "DB", "UR", "DR", "UL", "DL", "FR", "FL", "BR", "BL",
+        "UFR", "UBL", "DFL", "DBR", "DLB", "DRF", "URB", "ULF"
+    };
+    // input slot -> internal slot, see CubeAlgorithm.order
+    private static final String order = "AECGBFDHIJKLMSNTROQP";
+    // facelet of each piece token letter, see CubeAlgorithm.imap
+    private static final int[] imap = {53,15, 51,24, 49,44, 47,6, 29,11, 31,20, 33,40, 35,2, 17,22, 13,8, 42,26, 38,4, 52,16,23, 50,25,43, 48,37,5, 46,7,14, 30,21,10, 28,12,1, 34,3,39, 32,41,19};
+
+    public final byte[][] pos;
+    public final byte[][] ori;
+    public final String[] tokens;
+    public final byte[][] facelets;
+
+    public Corpus(int size, long seed) {
+        pos = new byte[size][];
+        ori = new byte[size][];
+        tokens = new String[size];
+        facelets = new byte[size][];
+        Random rnd = new Random(seed);
+        CubeAlgorithm c = new CubeAlgorithm((SolverTables)null);
+        for (int n = 0; n < size; n++) {
+            c.reset();
+            for (int i = 0; i < 40; i++) c.domove(rnd.nextInt(6));
+            pos[n] = c.pos.clone();
+            ori[n] = c.ori.clone();
+            tokens[n] = totokens(c.pos, c.ori);
+            facelets[n] = tofacelets(tokens[n]);
+        }
+    }
+
+    public void load(CubeAlgorithm ca, int n) {
+        System.arraycopy(pos[n], 0, ca.pos, 0, 20);
+        System.arraycopy(ori[n], 0, ca.ori, 0, 20);
+    }
+
+    // the piece in each input slot, turned so that its principal facelet
+    // is at the orientation index
+    private static String totokens(byte[] p, byte[] o) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            int s = order.charAt(i) - 'A';
+            String name = pieces[p[s]];
+            int len = name.length();
+            char[] t = new char[len];
+            for (int k = 0; k < len; k++) t[(k + o[s]) % len] = name.charAt(k);
+            if (i > 0) sb.append(' ');
+            sb.append(t);
+        }
+        return sb.toString();
+    }
+
+    // the face letters are used as colors
+    private static byte[] tofacelets(String tokens) {
+        byte[] f = new byte[54];
+        f[18] = 'R';
+        f[0] = 'L';
+        f[9] = 'F';
+        f[36] = 'B';
+        f[45] = 'U';
+        f[27] = 'D';
+        int l = 0;
+        for (int i = 0; i < tokens.length(); i++) {
+            if (tokens.charAt(i) != ' ') f[imap[l++]] = (byte)tokens.charAt(i);
+        }
+        return f;
+    }
+
+}
@@ -0,0 +1,98 @@
+package cubesolver;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The inner operations of the search and of the robot output.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MicroBenchmark {
+
+    CubeAlgorithm ca;
+    PackedCube packed;
+    int face;
+    int move;
+    // robot program before compactstep
+    byte[] program = new byte[CubeAlgorithm.OUTPUT_SIZE];
+    byte[] ms = new byte[CubeAlgorithm.OUTPUT_SIZE];
+    int programLen;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Corpus corpus = new Corpus(1, Corpus.SEED);
+        ca = new CubeAlgorithm((SolverTables)null);
+        corpus.load(ca, 0);
+        packed = new PackedCube();
+        packed.set(ca);
+        // robot program of 30 random face turns, about one solve
+        Random rnd = new Random(Corpus.SEED);
+        int len = 0;
+        ca.resetfaces();
+        for (int i = 0; i < 30; i++) {
+            len = ca.appendmove(program, len, rnd.nextInt(6), rnd.nextInt(3) + 1);
+        }
+        programLen = len;
+    }
+
+    @Benchmark
+    public byte domove() {
+        if (++face == 6) face = 0;
+        ca.domove(face);
+        return ca.pos[0];
+    }
+
+    // one of the 18 moves on the packed state, against the quarter turn of
+    // domove
+    @Benchmark
+    public long packedmove() {
+        if (++move == PackedCube.N_MOVE) move = 0;
+        packed.move(move);
+        return packed.edges;
+    }
+
+    // the coordinate of each table, a state of its own so that only this
+    // benchmark runs per table
+    @State(Scope.Thread)
+    public static class Position {
+        // table index of getposition
+        @Param({"0", "1", "2", "3", "4", "5", "6", "7"})
+        int table;
+
+        CubeAlgorithm ca;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            ca = new CubeAlgorithm((SolverTables)null);
+            new Corpus(1, Corpus.SEED).load(ca, 0);
+        }
+    }
+
+    @Benchmark
+    public int getposition(Position s) {
+        return s.ca.getposition(s.table);
+    }
+
+    @Benchmark
+    public int compactstep() {
+        System.arraycopy(program, 0, ms, 0, programLen);
+        return ca.compactstep(ms, programLen);
+    }
+
+}
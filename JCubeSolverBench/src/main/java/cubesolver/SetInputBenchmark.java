@@ -0,0 +1,56 @@
+package cubesolver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Parsing of the color scan (54 facelets) and of the piece notation
+// (20 tokens), cycling through the corpus.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetInputBenchmark {
+
+    @Param({"256"})
+    int corpusSize;
+
+    Corpus corpus;
+    CubeAlgorithm ca;
+    int n;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        corpus = new Corpus(corpusSize, Corpus.SEED);
+        ca = new CubeAlgorithm((SolverTables)null);
+    }
+
+    private int next() {
+        if (++n == corpusSize) n = 0;
+        return n;
+    }
+
+    @Benchmark
+    public CubeAlgorithm facelets() throws Exception {
+        return ca.setInput(corpus.facelets[next()]);
+    }
+
+    @Benchmark
+    public CubeAlgorithm tokens() {
+        return ca.setInput(corpus.tokens[next()]);
+    }
+
+}
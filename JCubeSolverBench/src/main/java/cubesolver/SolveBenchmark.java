@@ -0,0 +1,101 @@
+package cubesolver;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Whole solves and the four phases on their own. The cube state at the
+// start of every phase is recorded once per corpus entry, so a phase
+// benchmark only measures the search of that phase.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+
+    @Param({"256"})
+    int corpusSize;
+
+    // 0: cube state search, 1: move table search
+    @Param({"0", "1"})
+    int modeS;
+
+    Corpus corpus;
+    CubeAlgorithm ca;
+    byte[] ms = new byte[CubeAlgorithm.OUTPUT_SIZE];
+    // [phase][n] state at the start of the phase
+    byte[][][] phasePos = new byte[4][][];
+    byte[][][] phaseOri = new byte[4][][];
+    int n;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        corpus = new Corpus(corpusSize, Corpus.SEED);
+        ca = new CubeAlgorithm(SolverTables.load()).setModeS(modeS);
+        for (int p = 0; p < 4; p++) {
+            phasePos[p] = new byte[corpusSize][];
+            phaseOri[p] = new byte[corpusSize][];
+        }
+        for (int i = 0; i < corpusSize; i++) {
+            corpus.load(ca, i);
+            for (int p = 0; p < 4; p++) {
+                phasePos[p][i] = ca.pos.clone();
+                phaseOri[p][i] = ca.ori.clone();
+                // leaves the cube at the end of the phase
+                ca.solvephase(p * 2, 0);
+            }
+        }
+    }
+
+    private int next() {
+        if (++n == corpusSize) n = 0;
+        return n;
+    }
+
+    @Benchmark
+    public int solve() {
+        corpus.load(ca, next());
+        return ca.solve(ms);
+    }
+
+    private int phase(int p) {
+        int i = next();
+        System.arraycopy(phasePos[p][i], 0, ca.pos, 0, 20);
+        System.arraycopy(phaseOri[p][i], 0, ca.ori, 0, 20);
+        return ca.solvephase(p * 2, 0);
+    }
+
+    @Benchmark
+    public int phase0() {
+        return phase(0);
+    }
+
+    @Benchmark
+    public int phase1() {
+        return phase(1);
+    }
+
+    @Benchmark
+    public int phase2() {
+        return phase(2);
+    }
+
+    @Benchmark
+    public int phase3() {
+        return phase(3);
+    }
+
+}
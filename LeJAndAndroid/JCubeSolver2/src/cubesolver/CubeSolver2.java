@@ -36,7 +36,20 @@ public class CubeSolver2 {
     private static float lm2MaxSpeed;
 
     private static CubeAlgorithm ca;
+    private static byte[] moveBuf = new byte[CubeAlgorithm.OUTPUT_SIZE];
+    // upper bound of the search in ms, a longer robot program is taken after it
+    private static final long SOLVE_TIMEOUT = 20000;
+    // time in ms to try other solutions of phases 2 and 4 for a shorter
+    // robot program in all, see CubeAlgorithm.setLookahead. Phase 0 is
+    // streamed at once, the lookahead runs while its ops are turned.
+    private static final long LOOKAHEAD_BUDGET = 2000;
     private static String logFilePath = "";
+    private static String tableFilePath = "";
+    private static String cacheFilePath = "";
+    private static SolutionCache cache;
+    private static SolverStats stats = new SolverStats();
+    // solves built-in scrambles while the devices are reset, see SolverWarmup
+    private static SolverWarmup warmup;
     private static String lastMessage = "";
     private static byte[] colorBuf = new byte[16];
     private static int turntablePosition = 0;
@@ -291,8 +304,8 @@ public class CubeSolver2 {
         lm2.rotateTo(turntablePosition);
     }
 
-    private static void applyMoves(byte[] movebytes) {
-        for (int i = 0; i < movebytes.length; i += 2) {
+    private static void applyMoves(byte[] movebytes, int len) {
+        for (int i = 0; i < len; i += 2) {
             int m_step = 0, n_step = 0;
             if (movebytes[i + 1] == '1') {
                 m_step = 1;
@@ -334,18 +347,42 @@ public class CubeSolver2 {
             }
         }
         drawMessage("Solving...");
-        String moveStr;
+        int moveLen;
         try {
-            moveStr = ca.setInput(color).solve();
-            writeLog(moveStr);
+            if (warmup != null) {
+                warmup.stop();
+                writeLog(warmup.toString());
+                warmup = null;
+            }
+            // the robot runs the ops of each phase while the later phases
+            // are still searched
+            SolveStream stream = SolveStream.start(ca.setInput(color), moveBuf,
+                                                   System.currentTimeMillis() + SOLVE_TIMEOUT, null);
+            byte[] ops = stream.take();
+            // green flash
+            led.setPattern(4);
+            for (; ops != null; ops = stream.take()) {
+                applyMoves(ops, ops.length);
+            }
+            moveLen = stream.getLength();
+            writeLog(new String(moveBuf, 0, moveLen, "ASCII"));
+            writeLog(stats.toString());
+            if (!ca.isComplete()) {
+                writeLog("solve timeout");
+            }
+            writeLog("cache hits " + cache.getHits() + " misses " + cache.getMisses());
         } catch (Exception e) {
+            // e.g. a wrong scan rejected by validate()
+            writeLog("" + e.getMessage());
             drawMessage("Solve failed!");
             Delay.msDelay(3000);
             return;
         }
-        // green flash
-        led.setPattern(4);
-        applyMoves(moveStr.getBytes());
+        try {
+            cache.save(new File(cacheFilePath));
+        } catch (IOException e) {
+            writeLog("cache not saved");
+        }
         drawMessage("Solved!");
         // rotate 2 round
         tiltAway();
@@ -380,6 +417,8 @@ public class CubeSolver2 {
             logFilePath = CubeSolver2.class.getProtectionDomain().getCodeSource().getLocation().getPath();
             int index = logFilePath.lastIndexOf(".");
             logFilePath = logFilePath.substring(0, index + 1);
+            tableFilePath = logFilePath + "tables";
+            cacheFilePath = logFilePath + "cache";
             logFilePath += "log";
             removeLog();
             // connect BT
@@ -396,7 +435,26 @@ public class CubeSolver2 {
             // print information
             introMessage();
             // new Cube Algorithm engine
-            ca = new CubeAlgorithm();
+            // pruning tables are packed and memory mapped from a file
+            // next to the program, it is created on the first run. The move
+            // and symmetry tables are built while the devices are reset.
+            SolverTables tables = SolverTables.open(new File(tableFilePath)).preload();
+            ca = new CubeAlgorithm(tables);
+            // search on coordinate move tables, for the fastest robot program
+            ca.setModeS(1);
+            ca.setCostModel(RobotCost.EV3, 0);
+            // fewer nodes in the last phases, same programs
+            ca.setTranspositionTable(true);
+            // phase solutions up to one turn longer looked ahead
+            ca.setLookahead(LOOKAHEAD_BUDGET, 1);
+            // solutions of earlier runs, also of the cube put in turned. A
+            // damaged cache file starts an empty cache.
+            cache = SolutionCache.load(new File(cacheFilePath), 64, true);
+            ca.setCache(cache);
+            // per phase nodes, cut-offs and times for the log
+            ca.setStats(stats);
+            // compiles the search while the motors home
+            warmup = SolverWarmup.start(tables, ca);
             // get LED control
             led = LocalEV3.ev3.getLED();
 
@@ -0,0 +1,214 @@
+package cubesolver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+// Pruning tables packed into 4 bits per entry, even index in the low nibble.
+// The packed format can be memory mapped from a file so the tables are not
+// copied into the java heap.
+//
+// file format (big endian):
+//   int magic "NIBC"
+//   int number of tables
+//   int entries of each table
+//   int CRC32 of the packed entries
+//   packed entries of each table, every table starts on a new byte
+// A mapped file is checked against its header and checksum, so a truncated
+// or damaged file is not used.
+public class NibbleTableStore implements TableStore {
+
+    private static final int MAGIC = 0x4E494243;
+    // bytes checksummed at a time
+    private static final int CHUNK = 4096;
+
+    private final ByteBuffer data;
+    private final int[] size;
+    private final int[] offset;
+
+    // A damaged header gives an IOException, before anything is allocated
+    // from it, so that open() writes the file again.
+    private NibbleTableStore(ByteBuffer buf) throws IOException {
+        if (buf.limit() < 12 || buf.getInt(0) != MAGIC) {
+            throw new IOException("not a packed table file!");
+        }
+        int count = buf.getInt(4);
+        if (count < 0 || 12 + count * 4L > buf.limit()) {
+            throw new IOException("packed table file truncated!");
+        }
+        size = new int[count];
+        offset = new int[count];
+        long k = 12 + count * 4;
+        for (int i = 0; i < count; i++) {
+            size[i] = buf.getInt(8 + i * 4);
+            if (size[i] < 0) {
+                throw new IOException("packed table file damaged!");
+            }
+            offset[i] = (int)k;
+            k += (size[i] + 1L) / 2;
+            if (k > buf.limit()) {
+                throw new IOException("packed table file truncated!");
+            }
+        }
+        data = buf;
+    }
+
+    // CRC32 of the packed entries of the header of count tables
+    private static int checksum(ByteBuffer buf, int count) {
+        ByteBuffer b = buf.duplicate();
+        b.clear();
+        b.position(12 + count * 4);
+        byte[] chunk = new byte[CHUNK];
+        CRC32 crc = new CRC32();
+        while (b.hasRemaining()) {
+            int n = Math.min(b.remaining(), CHUNK);
+            b.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return (int)crc.getValue();
+    }
+
+    // packs the tables into a heap buffer
+    public static NibbleTableStore pack(byte[][] tables) {
+        try {
+            return new NibbleTableStore(ByteBuffer.wrap(toBytes(tables)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // empty tables of the given sizes in a direct buffer outside the java
+    // heap, filled with set(...) by a generator
+    static NibbleTableStore allocate(int[] sizes) {
+        int len = 12 + sizes.length * 4;
+        for (int i = 0; i < sizes.length; i++) {
+            len += (sizes[i] + 1) / 2;
+        }
+        ByteBuffer buf = ByteBuffer.allocateDirect(len);
+        buf.putInt(MAGIC);
+        buf.putInt(sizes.length);
+        for (int i = 0; i < sizes.length; i++) {
+            buf.putInt(sizes[i]);
+        }
+        // the checksum is set by write(file)
+        try {
+            return new NibbleTableStore(buf);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // maps a packed table file read only, without copying it
+    public static NibbleTableStore map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel ch = raf.getChannel();
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            NibbleTableStore t = new NibbleTableStore(buf);
+            if (buf.getInt(8 + t.size.length * 4) != checksum(buf, t.size.length)) {
+                throw new IOException("packed table file damaged!");
+            }
+            return t;
+        } finally {
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    // maps the packed table file, it is written first from the tabledata
+    // resource (or generated tables) when it does not exist yet, or is
+    // truncated, damaged or of an older format.
+    public static NibbleTableStore open(File file) throws Exception {
+        if (file.exists()) {
+            try {
+                return map(file);
+            } catch (IOException e) {
+                // written again below
+            }
+        }
+        write(CubeAlgorithm.loadTables(), file);
+        return map(file);
+    }
+
+    public static void write(byte[][] tables, File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(toBytes(tables));
+        } finally {
+            out.close();
+        }
+    }
+
+    // writes the packed tables in the file format
+    public void write(File file) throws IOException {
+        FileChannel ch = new FileOutputStream(file).getChannel();
+        try {
+            ByteBuffer buf = data.duplicate();
+            buf.clear();
+            // tables filled by set(...) get their checksum here, mapped
+            // tables already have it
+            if (!buf.isReadOnly()) {
+                buf.putInt(8 + size.length * 4, checksum(data, size.length));
+            }
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        } finally {
+            ch.close();
+        }
+    }
+
+    private static byte[] toBytes(byte[][] tables) {
+        int len = 12 + tables.length * 4;
+        for (int i = 0; i < tables.length; i++) {
+            len += (tables[i].length + 1) / 2;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        buf.putInt(MAGIC);
+        buf.putInt(tables.length);
+        for (int i = 0; i < tables.length; i++) {
+            buf.putInt(tables[i].length);
+        }
+        buf.putInt(0);
+        for (int i = 0; i < tables.length; i++) {
+            byte[] tb = tables[i];
+            for (int j = 0; j < tb.length; j += 2) {
+                int hi = j + 1 < tb.length ? tb[j + 1] : 0;
+                buf.put((byte)((tb[j] & 15) | (hi << 4)));
+            }
+        }
+        buf.putInt(8 + tables.length * 4, checksum(buf, tables.length));
+        return buf.array();
+    }
+
+    @Override
+    public int tableCount() {
+        return size.length;
+    }
+
+    @Override
+    public int size(int table) {
+        return size[table];
+    }
+
+    @Override
+    public int get(int table, int index) {
+        int b = data.get(offset[table] + (index >> 1));
+        return (index & 1) == 0 ? b & 15 : (b >> 4) & 15;
+    }
+
+    // Sets an entry of an allocated store. Both entries of a byte are
+    // written, so threads may only set entries of different bytes.
+    void set(int table, int index, int value) {
+        int k = offset[table] + (index >> 1);
+        int b = data.get(k);
+        data.put(k, (byte)((index & 1) == 0 ? (b & 0xF0) | value : (b & 15) | (value << 4)));
+    }
+
+}
@@ -0,0 +1,167 @@
+package cubesolver;
+
+// The cube state of CubeAlgorithm (pos/ori) packed into two longs, 5 bits
+// per piece in the internal slot order, the first slot in the highest bits:
+//   edges:   slots 0..11,  piece << 1 | flip
+//   corners: slots 12..19, (piece - 12) << 2 | twist
+// A move is a few shifts and masks from per move tables, without branches,
+// copying is two longs and equal states have equal longs, so they can be
+// compared and hashed directly (SolutionCache keys are these two longs).
+// Moves are numbered face*3 + quarter turns - 1, faces in FBRLUD order.
+public class PackedCube {
+
+    static final int N_MOVE = 18;
+
+    // per move the 4 edges and the 4 corners it moves: shift of the slot the
+    // piece comes from, shift of the slot it goes to and the flip or twist
+    // added. The masks keep the slots the move does not touch.
+    private static final int[] esrc = new int[N_MOVE * 4];
+    private static final int[] edst = new int[N_MOVE * 4];
+    private static final int[] eflip = new int[N_MOVE * 4];
+    private static final long[] ekeep = new long[N_MOVE];
+    private static final int[] csrc = new int[N_MOVE * 4];
+    private static final int[] cdst = new int[N_MOVE * 4];
+    private static final int[] ctwist = new int[N_MOVE * 4];
+    private static final long[] ckeep = new long[N_MOVE];
+
+    static {
+        // the tables are read off domove on the solved cube, where the piece
+        // in a slot tells the slot it came from
+        CubeAlgorithm c = new CubeAlgorithm((SolverTables)null);
+        for (int f = 0; f < 6; f++) {
+            c.reset();
+            for (int q = 0; q < 3; q++) {
+                c.domove(f);
+                int m = f * 3 + q, ne = m * 4, nc = m * 4;
+                ekeep[m] = -1L >>> 4;
+                ckeep[m] = -1L >>> 24;
+                for (int i = 0; i < 20; i++) {
+                    if (c.pos[i] == i) {
+                        continue;
+                    }
+                    if (i < 12) {
+                        esrc[ne] = shift(c.pos[i]);
+                        edst[ne] = shift(i);
+                        eflip[ne++] = c.ori[i];
+                        ekeep[m] &= ~(31L << shift(i));
+                    } else {
+                        csrc[nc] = shift(c.pos[i]);
+                        cdst[nc] = shift(i);
+                        ctwist[nc++] = c.ori[i];
+                        ckeep[m] &= ~(31L << shift(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private static final long SOLVED_EDGES = new PackedCube().edges;
+    private static final long SOLVED_CORNERS = new PackedCube().corners;
+
+    long edges;
+    long corners;
+
+    // the solved cube
+    public PackedCube() {
+        reset();
+    }
+
+    public PackedCube(PackedCube c) {
+        edges = c.edges;
+        corners = c.corners;
+    }
+
+    // bit position of the 5 bits of slot i
+    private static int shift(int i) {
+        return i < 12 ? 5 * (11 - i) : 5 * (19 - i);
+    }
+
+    public void reset() {
+        edges = 0;
+        corners = 0;
+        for (int i = 0; i < 12; i++) edges = edges << 5 | i << 1;
+        for (int i = 0; i < 8; i++) corners = corners << 5 | i << 2;
+    }
+
+    // packs the state pos/ori of a CubeAlgorithm
+    void set(byte[] pos, byte[] ori) {
+        long e = 0, c = 0;
+        for (int i = 0; i < 12; i++) e = e << 5 | pos[i] << 1 | ori[i];
+        for (int i = 12; i < 20; i++) c = c << 5 | (pos[i] - 12) << 2 | ori[i];
+        edges = e;
+        corners = c;
+    }
+
+    // unpacks into the state pos/ori of a CubeAlgorithm
+    void get(byte[] pos, byte[] ori) {
+        for (int i = 0; i < 12; i++) {
+            int v = (int)(edges >>> shift(i)) & 31;
+            pos[i] = (byte)(v >> 1);
+            ori[i] = (byte)(v & 1);
+        }
+        for (int i = 12; i < 20; i++) {
+            int v = (int)(corners >>> shift(i)) & 31;
+            pos[i] = (byte)((v >> 2) + 12);
+            ori[i] = (byte)(v & 3);
+        }
+    }
+
+    public void set(CubeAlgorithm ca) {
+        set(ca.pos, ca.ori);
+    }
+
+    public void get(CubeAlgorithm ca) {
+        get(ca.pos, ca.ori);
+    }
+
+    public void set(PackedCube c) {
+        edges = c.edges;
+        corners = c.corners;
+    }
+
+    // does move m, face*3 + quarter turns - 1
+    public void move(int m) {
+        edges = moveedges(edges, m);
+        corners = movecorners(corners, m);
+    }
+
+    static long moveedges(long e, int m) {
+        int k = m * 4;
+        return e & ekeep[m]
+            | (e >>> esrc[k] & 31 ^ eflip[k]) << edst[k]
+            | (e >>> esrc[k + 1] & 31 ^ eflip[k + 1]) << edst[k + 1]
+            | (e >>> esrc[k + 2] & 31 ^ eflip[k + 2]) << edst[k + 2]
+            | (e >>> esrc[k + 3] & 31 ^ eflip[k + 3]) << edst[k + 3];
+    }
+
+    static long movecorners(long c, int m) {
+        int k = m * 4;
+        return c & ckeep[m]
+            | corner(c, k) | corner(c, k + 1) | corner(c, k + 2) | corner(c, k + 3);
+    }
+
+    // corner k of the move table at its new slot with its twist added
+    private static long corner(long c, int k) {
+        long v = c >>> csrc[k] & 31;
+        long t = (v & 3) + ctwist[k];
+        // t is 0..4, take 3 off when it is 3 or 4
+        return (v & 28 | t - 3 * (t + 1 >> 2)) << cdst[k];
+    }
+
+    public boolean isSolved() {
+        return edges == SOLVED_EDGES && corners == SOLVED_CORNERS;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PackedCube && ((PackedCube)o).edges == edges && ((PackedCube)o).corners == corners;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = edges * 0x9E3779B97F4A7C15L + corners;
+        h ^= h >>> 29;
+        return (int)(h ^ (h >>> 32));
+    }
+
+}
@@ -0,0 +1,165 @@
+package cubesolver;
+
+// Chooses how the robot reorients the cube for the face turns of a
+// solution. tosrt has one spin/tilt recipe per face position, but each face
+// can be brought to the bottom in 4 orientations and the best one depends on
+// the following turns. The planner keeps the orientation (one of the 24 of
+// OrientationTable) as state and picks the cheapest orientation of every
+// turn by dynamic programming over the whole turn sequence, with the
+// cheapest of the spin/tilt paths of the fewest tilts between any two
+// orientations under the cost model.
+// The recipes already use the fewest tilts: bringing a face to the bottom
+// takes 1 tilt from the side and 2 from the top, whatever the spins. So
+// the planner only saves spins, and under the EV3 weights the recipes are
+// already the cheapest. Paths with more tilts are left out, with cheap
+// tilts they would save time but wear the tilt arm and raise the tilts
+// (from 9860 to 15870 over 300 solves). A plan is never more expensive and
+// never has more tilts than the recipes of tosrt.
+// A planner holds work arrays, it is used by one solver context.
+public class ReorientPlanner {
+
+    private static final int N_ORI = OrientationTable.N_ORI;
+    // face turns of one plan at most
+    private static final int MAX_TURNS = 64;
+
+    private final OrientationTable orient;
+    // [from * N_ORI + to]: time and spin/tilt ops of the cheapest path
+    private final int[] dist = new int[N_ORI * N_ORI];
+    private final byte[][] path = new byte[N_ORI * N_ORI][];
+    // [turn * N_ORI + orientation]: time of the best plan of the turns
+    // before, turning this one in this orientation, and the orientation of
+    // the turn before
+    private final int[] cost = new int[MAX_TURNS * N_ORI];
+    private final byte[] prev = new byte[MAX_TURNS * N_ORI];
+    private final int[] chosen = new int[MAX_TURNS];
+
+    public ReorientPlanner(OrientationTable orient, RobotCostModel model) {
+        this.orient = orient;
+        for (int o = 0; o < N_ORI; o++) {
+            paths(model, o);
+        }
+    }
+
+    // time of the cheapest reorientation of the fewest tilts from
+    // orientation a to b
+    int distance(int a, int b) {
+        return dist[a * N_ORI + b];
+    }
+
+    // Dijkstra from orientation o over (orientation, last op), so that a
+    // path never has two spins or two tilts in a row, compactstep would
+    // merge them into a step of another cost. Paths are ordered by tilts
+    // first, then time.
+    private void paths(RobotCostModel model, int o) {
+        // last op: 0 none, 1 spin, 2 tilt
+        int n = N_ORI * 3;
+        int[] d = new int[n];
+        int[] tilts = new int[n];
+        int[] from = new int[n];
+        byte[] op = new byte[n];
+        byte[] amount = new byte[n];
+        boolean[] done = new boolean[n];
+        for (int i = 0; i < n; i++) d[i] = Integer.MAX_VALUE;
+        d[o * 3] = 0;
+        for (;;) {
+            int u = -1;
+            for (int i = 0; i < n; i++) {
+                if (!done[i] && d[i] != Integer.MAX_VALUE &&
+                    (u < 0 || tilts[i] < tilts[u] || (tilts[i] == tilts[u] && d[i] < d[u]))) {
+                    u = i;
+                }
+            }
+            if (u < 0) {
+                break;
+            }
+            done[u] = true;
+            for (int k = 1; k < 3; k++) {
+                if (u % 3 == k) continue;
+                for (int a = 1; a < 4; a++) {
+                    int v = (k == 1 ? orient.spin : orient.tilt)[u / 3 * 4 + a] * 3 + k;
+                    int c = d[u] + model.cost(k == 1 ? 'S' : 'R', a);
+                    int t = tilts[u] + (k == 2 ? a : 0);
+                    if (d[v] == Integer.MAX_VALUE || t < tilts[v] || (t == tilts[v] && c < d[v])) {
+                        d[v] = c;
+                        tilts[v] = t;
+                        from[v] = u;
+                        op[v] = (byte)(k == 1 ? 'S' : 'R');
+                        amount[v] = (byte)('0' + a);
+                    }
+                }
+            }
+        }
+        for (int b = 0; b < N_ORI; b++) {
+            int v = b * 3;
+            for (int k = 1; k < 3; k++) {
+                int w = b * 3 + k;
+                if (d[v] == Integer.MAX_VALUE || (d[w] != Integer.MAX_VALUE &&
+                    (tilts[w] < tilts[v] || (tilts[w] == tilts[v] && d[w] < d[v])))) v = w;
+            }
+            int len = 0;
+            for (int w = v; w != o * 3; w = from[w]) len += 2;
+            byte[] p = new byte[len];
+            for (int w = v; w != o * 3; w = from[w]) {
+                p[--len] = amount[w];
+                p[--len] = op[w];
+            }
+            dist[o * N_ORI + b] = d[v];
+            path[o * N_ORI + b] = p;
+        }
+    }
+
+    // Writes the robot ops of face turns face[a..b), amount[a..b) quarter
+    // turns, from orientation o to ms at len and returns the new length.
+    // The orientation after the last turn is in faces_cm.
+    int plan(int[] face, int[] amount, int a, int b, int o, byte[] ms, int len, int[] faces_cm) {
+        int n = b - a;
+        if (n == 0) {
+            return len;
+        }
+        if (n > MAX_TURNS) {
+            throw new IllegalArgumentException("arguments error!");
+        }
+        for (int k = 0; k < n; k++) {
+            int f = face[a + k];
+            for (int r = 0; r < N_ORI; r++) {
+                int i = k * N_ORI + r;
+                cost[i] = Integer.MAX_VALUE;
+                // the face turned has to be at the bottom
+                if (orient.faces[r][5] != f) continue;
+                if (k == 0) {
+                    cost[i] = dist[o * N_ORI + r];
+                    prev[i] = (byte)o;
+                    continue;
+                }
+                for (int q = 0; q < N_ORI; q++) {
+                    int c = cost[(k - 1) * N_ORI + q];
+                    if (c == Integer.MAX_VALUE) continue;
+                    c += dist[q * N_ORI + r];
+                    if (c < cost[i]) {
+                        cost[i] = c;
+                        prev[i] = (byte)q;
+                    }
+                }
+            }
+        }
+        int r = -1;
+        for (int q = 0; q < N_ORI; q++) {
+            int c = cost[(n - 1) * N_ORI + q];
+            if (c != Integer.MAX_VALUE && (r < 0 || c < cost[(n - 1) * N_ORI + r])) r = q;
+        }
+        for (int k = n; k-- > 0;) {
+            chosen[k] = r;
+            r = prev[k * N_ORI + r];
+        }
+        for (int k = 0; k < n; k++) {
+            byte[] p = path[(k == 0 ? o : chosen[k - 1]) * N_ORI + chosen[k]];
+            System.arraycopy(p, 0, ms, len, p.length);
+            len += p.length;
+            ms[len++] = 'T';
+            ms[len++] = (byte)('0' + amount[a + k]);
+        }
+        System.arraycopy(orient.faces[chosen[n - 1]], 0, faces_cm, 0, 6);
+        return len;
+    }
+
+}
@@ -0,0 +1,62 @@
+package cubesolver;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Compares the search on the cube state (domove/getposition) with the search
+// on coordinate move tables, in nodes per second over the same scrambles,
+// and the parallel search on 1, 2, 4 ... cores against the move tables.
+// Usage: SearchBenchmark [number of scrambles] [seed]
+public class SearchBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        CubeAlgorithm ca = new CubeAlgorithm();
+        ca.setModeS(1);
+        // warm up both paths
+        run(ca, 0, 20, seed);
+        run(ca, 1, 20, seed);
+        long base = 0;
+        for (int mode = 0; mode < 2; mode++) {
+            ca.nodes = 0;
+            long start = System.nanoTime();
+            run(ca, mode, count, seed);
+            base = System.nanoTime() - start;
+            report(mode == 0 ? "cube state  " : "move tables ", count, ca.nodes, base);
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int n = 1; ; n = Math.min(n * 2, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(n);
+            ca.setParallel(pool);
+            run(ca, 1, 20, seed);
+            ca.nodes = 0;
+            long start = System.nanoTime();
+            run(ca, 1, count, seed);
+            long elapsed = System.nanoTime() - start;
+            report("parallel " + n + "  ", count, ca.nodes, elapsed);
+            System.out.println("  speedup " + (float)base / elapsed + " on " + n + " of " + cores + " cores");
+            ca.setParallel(null);
+            pool.shutdown();
+            if (n == cores) {
+                break;
+            }
+        }
+    }
+
+    private static void report(String name, int count, long nodes, long elapsed) {
+        System.out.println(name + count + " solves, " + nodes + " nodes, " + (elapsed / 1000000) + " ms, " +
+                           (long)(nodes * 1e9 / elapsed) + " nodes/s");
+    }
+
+    private static void run(CubeAlgorithm ca, int mode, int count, long seed) throws Exception {
+        Random rnd = new Random(seed);
+        ca.setModeS(mode);
+        for (int n = 0; n < count; n++) {
+            ca.reset();
+            for (int i = 0; i < 40; i++) ca.domove(rnd.nextInt(6));
+            ca.solve();
+        }
+    }
+
+}
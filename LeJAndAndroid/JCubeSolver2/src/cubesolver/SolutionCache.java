@@ -0,0 +1,238 @@
+package cubesolver;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Bounded LRU cache of solutions, keyed by the cube state packed into 100
+// bits, see PackedCube. The face turns of a solution are stored and turned
+// into robot ops again on a hit, so the output is the same as a search would
+// give.
+// With rotations the state is first turned into the smallest of its 24
+// whole cube rotations, so the same scramble put into the robot another
+// way round is found too (in cost mode this solution can then cost more
+// than a new search would give). One cache serves solvers of the same
+// settings, access is synchronized.
+//
+// file format (big endian):
+//   int magic "SOLC"
+//   int number of entries, least recently used first
+//   each entry: long key, long key, byte face turns, face turns as face*3 + quarter turns - 1
+//   int CRC32 of the entries
+// A file that does not match its checksum, or has a face turn or a length
+// out of range, is not used.
+public class SolutionCache {
+
+    private static final int MAGIC = 0x534F4C43;
+    // most face turns of a solution, the size of the solver's buffer
+    static final int MAX_TURNS = 64;
+
+    private final LinkedHashMap<Key, byte[]> map;
+    private final int capacity;
+    private final boolean rotations;
+    private long hits;
+    private long misses;
+    // work state of the rotations
+    private final CubeAlgorithm work = new CubeAlgorithm((SolverTables)null);
+    private final PackedCube packed = new PackedCube();
+
+    public SolutionCache(final int capacity, boolean rotations) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("arguments error!");
+        }
+        map = new LinkedHashMap<Key, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.capacity = capacity;
+        this.rotations = rotations;
+    }
+
+    // the cache saved in file, empty if there is none or it is damaged
+    public static SolutionCache load(File file, int capacity, boolean rotations) {
+        SolutionCache c = new SolutionCache(capacity, rotations);
+        if (!file.exists()) {
+            return c;
+        }
+        try {
+            c.read(file);
+        } catch (IOException e) {
+            return new SolutionCache(capacity, rotations);
+        }
+        return c;
+    }
+
+    private void read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            DataInputStream din = new DataInputStream(in);
+            if (din.readInt() != MAGIC) {
+                throw new IOException("not a solution cache file!");
+            }
+            int n = din.readInt();
+            if (n < 0 || n > capacity) {
+                throw new IOException("solution cache file damaged!");
+            }
+            CheckedInputStream cin = new CheckedInputStream(in, new CRC32());
+            DataInputStream ein = new DataInputStream(cin);
+            for (int i = 0; i < n; i++) {
+                Key k = new Key();
+                k.a = ein.readLong();
+                k.b = ein.readLong();
+                int count = ein.readUnsignedByte();
+                if (count > MAX_TURNS) {
+                    throw new IOException("solution cache file damaged!");
+                }
+                byte[] moves = new byte[count];
+                ein.readFully(moves);
+                for (int j = 0; j < count; j++) {
+                    if (moves[j] < 0 || moves[j] >= 18) {
+                        throw new IOException("solution cache file damaged!");
+                    }
+                }
+                map.put(k, moves);
+            }
+            if (din.readInt() != (int)cin.getChecksum().getValue() || in.read() != -1) {
+                throw new IOException("solution cache file damaged!");
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    // Writes a temporary file next to file and renames it over file, so
+    // that file is either the old or the new cache when the power is lost.
+    public synchronized void save(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            DataOutputStream dout = new DataOutputStream(out);
+            dout.writeInt(MAGIC);
+            dout.writeInt(map.size());
+            dout.flush();
+            CheckedOutputStream cout = new CheckedOutputStream(out, new CRC32());
+            DataOutputStream eout = new DataOutputStream(cout);
+            for (Map.Entry<Key, byte[]> e : map.entrySet()) {
+                eout.writeLong(e.getKey().a);
+                eout.writeLong(e.getKey().b);
+                eout.writeByte(e.getValue().length);
+                eout.write(e.getValue());
+            }
+            eout.flush();
+            dout.writeInt((int)cout.getChecksum().getValue());
+            dout.flush();
+        } finally {
+            out.close();
+        }
+        // renameTo does not replace an existing file on every platform
+        if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+            throw new IOException("solution cache not renamed!");
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    // Writes the robot program of the cached solution of the cube state of
+    // ca into ms and returns its length, or -1 if it is not cached. k gets
+    // the key of the state for put.
+    synchronized int get(CubeAlgorithm ca, byte[] ms, Key k) {
+        key(ca, k);
+        byte[] moves = map.get(k);
+        if (moves == null) {
+            misses++;
+            return -1;
+        }
+        hits++;
+        ca.resetfaces();
+        for (int i = 0; i < moves.length; i++) {
+            // face of the rotated cube back to the face of this cube
+            int f = CubeRotations.inv(k.rotation, moves[i] / 3);
+            ca.pushturn(f, moves[i] % 3 + 1);
+        }
+        return ca.compactstep(ms, ca.flushturns(ms, 0, true));
+    }
+
+    // stores the face turns of the solution of the state of key k, k is
+    // copied so the solver can use it again
+    synchronized void put(Key k, byte[] solmove, int count) {
+        Key key = new Key();
+        key.a = k.a;
+        key.b = k.b;
+        byte[] moves = new byte[count];
+        for (int i = 0; i < count; i++) {
+            moves[i] = (byte)(CubeRotations.face(k.rotation, solmove[i] / 3) * 3 + solmove[i] % 3);
+        }
+        map.put(key, moves);
+    }
+
+    // packs the state, or its smallest rotation, into k
+    private void key(CubeAlgorithm ca, Key k) {
+        pack(ca.pos, ca.ori, k);
+        k.rotation = 0;
+        if (!rotations) {
+            return;
+        }
+        long a = k.a, b = k.b;
+        int rotation = 0;
+        for (int r = 1; r < CubeRotations.N_ROT; r++) {
+            CubeRotations.rotate(ca, r, work);
+            pack(work.pos, work.ori, k);
+            if (k.a < a || (k.a == a && k.b < b)) {
+                a = k.a;
+                b = k.b;
+                rotation = r;
+            }
+        }
+        k.a = a;
+        k.b = b;
+        k.rotation = rotation;
+    }
+
+    // edge positions and flips in a, corner positions and twists in b
+    private void pack(byte[] pos, byte[] ori, Key k) {
+        packed.set(pos, ori);
+        k.a = packed.edges;
+        k.b = packed.corners;
+    }
+
+    static class Key {
+        long a;
+        long b;
+        // rotation of the state to the one packed, not part of the key
+        int rotation;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key)o).a == a && ((Key)o).b == b;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = a * 31 + b;
+            return (int)(h ^ (h >>> 32));
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package cubesolver;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Pool of solver contexts on one shared SolverTables, for solving from
+// several threads. A context is used by one thread between acquire and
+// release, and keeps its modes when it goes back to the pool.
+public class SolverPool {
+
+    private final SolverTables tables;
+    private final ConcurrentLinkedQueue<CubeAlgorithm> free = new ConcurrentLinkedQueue<CubeAlgorithm>();
+
+    public SolverPool(SolverTables tables) {
+        this.tables = tables;
+    }
+
+    // new contexts search on the move tables
+    public CubeAlgorithm acquire() {
+        CubeAlgorithm ca = free.poll();
+        if (ca == null) {
+            ca = new CubeAlgorithm(tables).setModeS(1);
+        }
+        return ca;
+    }
+
+    public void release(CubeAlgorithm ca) {
+        free.offer(ca);
+    }
+
+    public String solve(byte[] input) throws Exception {
+        CubeAlgorithm ca = acquire();
+        try {
+            return ca.setInput(input).solve();
+        } finally {
+            release(ca);
+        }
+    }
+
+    public String solve(String input) throws Exception {
+        CubeAlgorithm ca = acquire();
+        try {
+            return ca.setInput(input).solve();
+        } finally {
+            release(ca);
+        }
+    }
+
+}
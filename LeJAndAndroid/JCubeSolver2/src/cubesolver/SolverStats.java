@@ -0,0 +1,100 @@
+package cubesolver;
+
+// Counters of the last solve of a CubeAlgorithm, see setStats. Per phase
+// the search nodes, the cut-offs of each pruning table, the number of moves
+// found and the wall time. Without stats the searches only test for null
+// when they cut off a node.
+public class SolverStats {
+
+    static final int N_PHASE = 4;
+    // cut-off kinds: first and second table of the phase, the symmetry
+    // reduced table of phases 4 and 6, the cost bound of the cost search,
+    // nodes reached before in the cost transposition table
+    public static final int CUT_FIRST = 0;
+    public static final int CUT_SECOND = 1;
+    public static final int CUT_SYM = 2;
+    public static final int CUT_COST = 3;
+    public static final int CUT_TRANSPOSITION = 4;
+    private static final int N_CUT = 5;
+    private static final String[] cutnames = {"t0", "t1", "sym", "cost", "trans"};
+
+    final long[] nodes = new long[N_PHASE];
+    final long[][] cuts = new long[N_PHASE][N_CUT];
+    final int[] depth = new int[N_PHASE];
+    final long[] nanos = new long[N_PHASE];
+    // the solution came from the SolutionCache
+    boolean cached;
+    // face turns and robot ops taken out by the peephole optimiser
+    int savedturns;
+    int savedops;
+
+    public void reset() {
+        for (int p = 0; p < N_PHASE; p++) {
+            nodes[p] = 0;
+            depth[p] = 0;
+            nanos[p] = 0;
+            for (int k = 0; k < N_CUT; k++) cuts[p][k] = 0;
+        }
+        cached = false;
+        savedturns = 0;
+        savedops = 0;
+    }
+
+    // adds the counters of a parallel search worker
+    void add(SolverStats s) {
+        for (int p = 0; p < N_PHASE; p++) {
+            for (int k = 0; k < N_CUT; k++) cuts[p][k] += s.cuts[p][k];
+        }
+    }
+
+    public long getNodes(int phase) {
+        return nodes[phase];
+    }
+
+    public long getCuts(int phase, int kind) {
+        return cuts[phase][kind];
+    }
+
+    public int getDepth(int phase) {
+        return depth[phase];
+    }
+
+    public long getNanos(int phase) {
+        return nanos[phase];
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public int getSavedTurns() {
+        return savedturns;
+    }
+
+    public int getSavedOps() {
+        return savedops;
+    }
+
+    // one line per phase, for the log
+    @Override
+    public String toString() {
+        if (cached) {
+            return "cached";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < N_PHASE; p++) {
+            if (p > 0) sb.append('\n');
+            sb.append("phase ").append(p).append(": depth ").append(depth[p])
+              .append(", ").append(nodes[p]).append(" nodes, cuts");
+            for (int k = 0; k < N_CUT; k++) {
+                if (cuts[p][k] != 0) sb.append(' ').append(cutnames[k]).append('=').append(cuts[p][k]);
+            }
+            sb.append(", ").append(nanos[p] / 1000000).append('.')
+              .append(nanos[p] / 100000 % 10).append(" ms");
+        }
+        sb.append("\npeephole: ").append(savedturns).append(" turns, ")
+          .append(savedops).append(" ops saved");
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,230 @@
+package cubesolver;
+
+// Exact pruning tables of phases 4 and 6 (tables 4/5 and 6/7), reduced by
+// the symmetries of the cube. A symmetry maps a position to one with the
+// same number of moves left, so only one position of each symmetry class of
+// the first coordinate is stored, with the second coordinate conjugated by
+// the same symmetry:
+//   phase 4: UD slice choice (table 4) by the 16 symmetries keeping the UD
+//            axis, times tetrad choice/twist/parity (table 5)
+//   phase 6: the 3 slice edge permutations by all 48 symmetries, times the
+//            2 tetrad permutations
+// This gives the exact distance of the phase instead of the maximum of two
+// tables. With raw coordinates the phase 6 table would have 13824 * 576
+// entries (4 MB packed), with the 464 edge classes it is 130 KB. The tables
+// are not changed after construction.
+public class SymTables {
+
+    static final int N_SYM = 48;
+    // the symmetries keeping the UD axis come first
+    static final int N_SYM_UD = 16;
+    static final int N_UDSLICE = 256;
+    static final int N_TETRAD = 1536;
+    static final int N_EDGE = 13824;
+    static final int N_CORNER = 576;
+    // piece/slot names in the internal order of CubeAlgorithm
+    private static final String[] pieces = {
+        "UF", "DF", "UB", "DB", "UR", "DR", "UL", "DL", "FR", "FL", "BR", "BL",
+        "UFR", "UBL", "DFL", "DBR", "DLB", "DRF", "URB", "ULF"
+    };
+    private static final String faces = "UDFBRL";
+    private static final int[][] axisperm = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+
+    // [sym * 20 + slot]: slot the symmetry moves it to
+    private final byte[] symperm = new byte[N_SYM * 20];
+    private final int[] syminv = new int[N_SYM];
+    // symmetry class of a coordinate and the symmetry taking it to the
+    // representative of the class
+    private final char[] udclass = new char[N_UDSLICE];
+    private final byte[] udsym = new byte[N_UDSLICE];
+    private final char[] edgeclass = new char[N_EDGE];
+    private final byte[] edgesym = new byte[N_EDGE];
+    // [sym * size + coordinate]: coordinate conjugated by the symmetry
+    private final char[] tetradconj = new char[N_SYM_UD * N_TETRAD];
+    private final char[] cornerconj = new char[N_SYM * N_CORNER];
+    // distance + 1 at [class * size of the second coordinate + conjugated
+    // coordinate], capped at 15
+    final TableStore dist;
+    final int udclasses;
+    final int edgeclasses;
+
+    public SymTables(MoveTables mt) {
+        initsyms();
+        CubeAlgorithm c = new CubeAlgorithm((SolverTables)null);
+        CubeAlgorithm d = new CubeAlgorithm((SolverTables)null);
+        // phase 4 coordinates
+        int[] rep = new int[N_UDSLICE];
+        long[] stab = new long[N_UDSLICE];
+        udclasses = classify(c, d, 4, N_UDSLICE, N_SYM_UD, udclass, udsym, rep, stab);
+        for (int i = 0; i < N_TETRAD; i++) {
+            // only 4 corners in the second tetrad are valid
+            if (Integer.bitCount(i / 6) != 4) continue;
+            c.setposition(5, i);
+            for (int s = 0; s < N_SYM_UD; s++) {
+                conj(c, d, s);
+                tetradconj[s * N_TETRAD + i] = (char)d.getposition(5);
+            }
+        }
+        byte[] t4 = bfs(mt, 4, udclasses, rep, stab, N_TETRAD, N_SYM_UD);
+        // phase 6 coordinates
+        rep = new int[N_EDGE];
+        stab = new long[N_EDGE];
+        edgeclasses = classify(c, d, -1, N_EDGE, N_SYM, edgeclass, edgesym, rep, stab);
+        for (int i = 0; i < N_CORNER; i++) {
+            c.reset();
+            c.numtoperm(c.pos, i / 24, 12);
+            c.numtoperm(c.pos, i % 24, 16);
+            for (int s = 0; s < N_SYM; s++) {
+                conj(c, d, s);
+                cornerconj[s * N_CORNER + i] = (char)(d.permtonum(d.pos, 12) * 24 + d.permtonum(d.pos, 16));
+            }
+        }
+        byte[] t6 = bfs(mt, 6, edgeclasses, rep, stab, N_CORNER, N_SYM);
+        dist = NibbleTableStore.pack(new byte[][] {t4, t6});
+    }
+
+    // lower bound of the moves left in phase 4 or 6 from coordinates c0, c1
+    // of the tables phase and phase+1, exact up to 14 moves.
+    int distance(int phase, int c0, int c1) {
+        return dist.get(phase == 4 ? 0 : 1, index(phase, c0, c1)) - 1;
+    }
+
+    // index of coordinates c0, c1 in the reduced table of phase 4 or 6
+    private int index(int phase, int c0, int c1) {
+        if (phase == 4) {
+            return udclass[c0] * N_TETRAD + tetradconj[udsym[c0] * N_TETRAD + c1];
+        }
+        int e = c0 / 24 * 24 + c1 / 24;
+        int k = c0 % 24 * 24 + c1 % 24;
+        return edgeclass[e] * N_CORNER + cornerconj[edgesym[e] * N_CORNER + k];
+    }
+
+    // each symmetry maps the faces, keeping opposite faces opposite
+    private void initsyms() {
+        for (int s = 0; s < N_SYM; s++) {
+            int[] p = axisperm[s / 8];
+            for (int i = 0; i < 20; i++) {
+                char[] name = pieces[i].toCharArray();
+                for (int k = 0; k < name.length; k++) {
+                    int f = faces.indexOf(name[k]);
+                    name[k] = faces.charAt(p[f / 2] * 2 + ((f & 1) ^ (s >> (f / 2) & 1)));
+                }
+                symperm[s * 20 + i] = (byte)indexof(name);
+            }
+        }
+        for (int s = 0; s < N_SYM; s++) {
+            for (int t = 0; t < N_SYM; t++) {
+                int i = 0;
+                for (; i < 20 && symperm[t * 20 + symperm[s * 20 + i]] == i; i++);
+                if (i == 20) syminv[s] = t;
+            }
+        }
+    }
+
+    // slot with the same faces in any order
+    private static int indexof(char[] name) {
+        for (int i = 0; i < 20; i++) {
+            String p = pieces[i];
+            int k = 0;
+            for (; k < name.length && p.length() == name.length && p.indexOf(name[k]) >= 0; k++);
+            if (k == name.length) return i;
+        }
+        throw new IllegalStateException("no piece!");
+    }
+
+    // d = s c s^-1, only the piece positions
+    private void conj(CubeAlgorithm c, CubeAlgorithm d, int s) {
+        for (int i = 0; i < 20; i++) {
+            d.pos[symperm[s * 20 + i]] = symperm[s * 20 + c.pos[i]];
+        }
+    }
+
+    // edge permutation coordinate of phase 6, slices M, S, E
+    private static void setedges(CubeAlgorithm c, int n) {
+        c.reset();
+        c.numtoperm(c.pos, n % 24, 8); n /= 24;
+        c.numtoperm(c.pos, n % 24, 4); n /= 24;
+        c.numtoperm(c.pos, n, 0);
+    }
+
+    private static int getedges(CubeAlgorithm c) {
+        return c.permtonum(c.pos, 0) * 576 + c.permtonum(c.pos, 4) * 24 + c.permtonum(c.pos, 8);
+    }
+
+    // Splits coordinate values 0..n-1 of table t (edges of phase 6 for -1)
+    // into symmetry classes, the smallest value being the representative.
+    // stab gets the symmetries leaving the representative unchanged.
+    // Returns the number of classes.
+    private int classify(CubeAlgorithm c, CubeAlgorithm d, int t, int n, int nsym,
+                         char[] cls, byte[] sym, int[] rep, long[] stab) {
+        int k = 0;
+        boolean[] done = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            if (done[i]) continue;
+            if (t < 0) setedges(c, i); else c.setposition(t, i);
+            for (int s = 0; s < nsym; s++) {
+                conj(c, d, s);
+                int v = t < 0 ? getedges(d) : d.getposition(t);
+                if (v == i) {
+                    stab[k] |= 1L << s;
+                }
+                if (!done[v]) {
+                    done[v] = true;
+                    cls[v] = (char)k;
+                    sym[v] = (byte)syminv[s];
+                }
+            }
+            rep[k++] = i;
+        }
+        return k;
+    }
+
+    // Breadth first search of phase p over the reduced coordinate
+    // class * n2 + conjugated second coordinate.
+    private byte[] bfs(MoveTables mt, int p, int nclass, int[] rep, long[] stab, int n2, int nsym) {
+        byte[] tb = new byte[nclass * n2];
+        char[] m0 = mt.moves[p];
+        char[] m1 = mt.moves[p + 1];
+        CubeAlgorithm c = new CubeAlgorithm((SolverTables)null);
+        int n = fill(tb, index(p, c.getposition(p), c.getposition(p + 1)), 1, p, stab, n2, nsym);
+        for (int l = 1; n != 0; l++) {
+            n = 0;
+            for (int i = 0; i < tb.length; i++) {
+                if (tb[i] != l) continue;
+                // coordinates of the entry
+                int r = rep[i / n2], k = i % n2;
+                int c0 = p == 4 ? r : r / 24 * 24 + k / 24;
+                int c1 = p == 4 ? k : r % 24 * 24 + k % 24;
+                for (int m = 0; m < MoveTables.N_MOVE; m++) {
+                    if (m % 3 != 1 && m / 3 < p) continue;
+                    n += fill(tb, index(p, m0[c0 * MoveTables.N_MOVE + m], m1[c1 * MoveTables.N_MOVE + m]),
+                              l + 1, p, stab, n2, nsym);
+                }
+            }
+        }
+        for (int i = 0; i < tb.length; i++) {
+            if (tb[i] > 15) tb[i] = 15;
+        }
+        return tb;
+    }
+
+    // Sets entry j to depth l if it is still empty. A representative with
+    // symmetries of its own is the same position with the second coordinate
+    // conjugated, those entries are set too. Returns the number set.
+    private int fill(byte[] tb, int j, int l, int p, long[] stab, int n2, int nsym) {
+        if (tb[j] != 0) {
+            return 0;
+        }
+        int n = 0, cls = j / n2, k = j % n2;
+        for (int u = 0; u < nsym; u++) {
+            if ((stab[cls] >> u & 1) == 0) continue;
+            int i = cls * n2 + (p == 4 ? tetradconj[u * n2 + k] : cornerconj[u * n2 + k]);
+            if (tb[i] == 0) {
+                tb[i] = (byte)l;
+                n++;
+            }
+        }
+        return n;
+    }
+
+}
@@ -0,0 +1,195 @@
+package cubesolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Solves the cube state in each of its 24 whole cube rotations and through
+// its inverse, on a pool, and returns the variant whose robot program is
+// the cheapest under the cost model (RobotCost.EV3 without one), with the
+// same setInput(...) / solve() API and output as CubeAlgorithm.
+// The face turns of a rotated state are turned back to the faces of the
+// cube, those of the inverse state are reversed and inverted, then all of
+// them go through the same peephole and reorientation as a plain solve.
+// With a budget, variants not started by then are left out and the running
+// ones take their first solution (see solve(ms, deadline, token)). The
+// unrotated state is always solved.
+public class VariantSolver extends CubeAlgorithm {
+
+    private static final int N_ROT = CubeRotations.N_ROT;
+
+    // null solves the variants one after the other on the calling thread
+    private final ForkJoinPool pool;
+    private final CubeAlgorithm[] variants;
+    // face turns found for each variant, output mode 0
+    private final byte[][] results;
+    private final int[] resultlen;
+    private long budget;
+    private boolean inverse = true;
+    private int modeo = 1;
+    private int variant = -1;
+    private int solved;
+
+    public VariantSolver(SolverTables tables, ForkJoinPool pool) {
+        super(tables);
+        this.pool = pool;
+        variants = new CubeAlgorithm[N_ROT * 2];
+        results = new byte[N_ROT * 2][OUTPUT_SIZE];
+        resultlen = new int[N_ROT * 2];
+        for (int v = 0; v < variants.length; v++) {
+            variants[v] = new CubeAlgorithm(tables);
+        }
+    }
+
+    // time for the variants in ms, 0 for no limit
+    public VariantSolver setBudget(long ms) {
+        if (ms < 0) {
+            throw new IllegalArgumentException("arguments error!");
+        }
+        budget = ms;
+        return this;
+    }
+
+    // also solve the inverse of each rotation, on by default
+    public VariantSolver setInverse(boolean on) {
+        inverse = on;
+        return this;
+    }
+
+    @Override
+    public CubeAlgorithm setModeO(int mode) {
+        modeo = mode;
+        return super.setModeO(mode);
+    }
+
+    // variant of the last solve: rotation, plus 24 through the inverse
+    public int getVariant() {
+        return variant;
+    }
+
+    // number of variants solved in the last solve
+    public int getSolvedCount() {
+        return solved;
+    }
+
+    @Override
+    public int solve(byte[] ms) {
+        check();
+        int len = fromcache(ms);
+        if (len >= 0) {
+            variant = -1;
+            return len;
+        }
+        long end = budget > 0 ? System.currentTimeMillis() + budget : 0;
+        if (deadline != 0 && (end == 0 || deadline < end)) {
+            end = deadline;
+        }
+        List<VariantTask> tasks = new ArrayList<VariantTask>();
+        int n = inverse ? N_ROT * 2 : N_ROT;
+        for (int v = 0; v < n; v++) {
+            CubeAlgorithm w = variants[v];
+            copysettings(w);
+            w.setModeO(0);
+            CubeRotations.rotate(this, v % N_ROT, w);
+            if (v >= N_ROT) {
+                w.invert();
+            }
+            resultlen[v] = -1;
+            tasks.add(new VariantTask(this, v, end));
+        }
+        if (pool != null) {
+            pool.invoke(new VariantsTask(tasks));
+        } else {
+            for (VariantTask t : tasks) t.compute();
+        }
+        checkcancel();
+        // the cheapest robot program, the unrotated state first so it wins
+        // ties
+        variant = -1;
+        solved = 0;
+        complete = true;
+        int best = Integer.MAX_VALUE;
+        super.setModeO(1);
+        for (int v = 0; v < n; v++) {
+            if (resultlen[v] < 0) {
+                complete = false;
+                continue;
+            }
+            solved++;
+            complete &= variants[v].isComplete();
+            int c = cost(ms, program(v, ms));
+            if (c < best) {
+                best = c;
+                variant = v;
+            }
+        }
+        super.setModeO(modeo);
+        len = program(variant, ms);
+        tocache();
+        return len;
+    }
+
+    // Writes the solution of variant v as face turns of this cube, in the
+    // output mode, to ms and returns its length.
+    private int program(int v, byte[] ms) {
+        byte[] r = results[v];
+        int n = resultlen[v];
+        resetfaces();
+        for (int k = 0; k < n; k += 2) {
+            // the inverse state is solved by its solution backwards
+            int i = v < N_ROT ? k : n - 2 - k;
+            int q = r[i + 1] - '0';
+            pushturn(CubeRotations.inv(v % N_ROT, "FBRLUD".indexOf(r[i])), v < N_ROT ? q : 4 - q);
+        }
+        return compactstep(ms, flushturns(ms, 0, true));
+    }
+
+    private static class VariantsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<VariantTask> tasks;
+
+        VariantsTask(List<VariantTask> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
+
+    // one variant on its own context
+    private static class VariantTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final VariantSolver s;
+        private final int v;
+        private final long end;
+
+        VariantTask(VariantSolver s, int v, long end) {
+            this.s = s;
+            this.v = v;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (v != 0 && end != 0 && System.currentTimeMillis() >= end) {
+                return;
+            }
+            if (s.token != null && s.token.isCancelled()) {
+                return;
+            }
+            CubeAlgorithm w = s.variants[v];
+            try {
+                s.resultlen[v] = w.solve(s.results[v], end, s.token);
+            } catch (CancellationException e) {
+                s.resultlen[v] = -1;
+            }
+        }
+    }
+
+}